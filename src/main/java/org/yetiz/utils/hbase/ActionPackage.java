@@ -0,0 +1,32 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Row;
+
+/**
+ * A queued fast/async action and its retry state.
+ */
+public class ActionPackage {
+	protected final long createdTime;
+	protected Row action;
+	protected int attempts = 0;
+
+	public ActionPackage(Row action) {
+		this(action, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param createdTime queued time the retry deadline is counted from
+	 */
+	protected ActionPackage(Row action, long createdTime) {
+		this.action = action;
+		this.createdTime = createdTime;
+	}
+
+	public Row action() {
+		return action;
+	}
+
+	public int attempts() {
+		return attempts;
+	}
+}
@@ -0,0 +1,58 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * Sizing of a client-maintained row Bloom filter, see <code>HBaseClient.Builder.bloomFilter</code>.
+ */
+public final class BloomPolicy {
+	public static final long DEFAULT_EXPECTED_ROWS = 10000000;
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+	private long expectedRows = DEFAULT_EXPECTED_ROWS;
+	private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+	private boolean bootstrap = true;
+
+	private BloomPolicy() {
+	}
+
+	public static final BloomPolicy create() {
+		return new BloomPolicy();
+	}
+
+	public long expectedRows() {
+		return expectedRows;
+	}
+
+	public BloomPolicy expectedRows(long expectedRows) {
+		if (expectedRows <= 0) {
+			throw new IllegalArgumentException("expectedRows must be positive");
+		}
+
+		this.expectedRows = expectedRows;
+		return this;
+	}
+
+	public double falsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	public BloomPolicy falsePositiveRate(double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+		}
+
+		this.falsePositiveRate = falsePositiveRate;
+		return this;
+	}
+
+	/**
+	 * load the existing rows with a key-only scan before the filter answers, otherwise the filter
+	 * assumes every row of the table is written through this client
+	 */
+	public boolean bootstrap() {
+		return bootstrap;
+	}
+
+	public BloomPolicy bootstrap(boolean bootstrap) {
+		this.bootstrap = bootstrap;
+		return this;
+	}
+}
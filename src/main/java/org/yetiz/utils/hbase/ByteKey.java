@@ -0,0 +1,30 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * <code>byte[]</code> with value equality, for hash map keys.
+ */
+final class ByteKey {
+	private final byte[] bytes;
+	private final int hash;
+
+	ByteKey(byte[] bytes) {
+		this.bytes = bytes;
+		this.hash = Bytes.hashCode(bytes);
+	}
+
+	byte[] bytes() {
+		return bytes;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ByteKey && Bytes.equals(bytes, ((ByteKey) obj).bytes);
+	}
+}
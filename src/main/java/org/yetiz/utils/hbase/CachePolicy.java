@@ -0,0 +1,93 @@
+package org.yetiz.utils.hbase;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds of a per-table client row cache.
+ */
+public final class CachePolicy {
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(1);
+	public static final int DEFAULT_OFF_HEAP_SLAB_SIZE = 64 * 1024 * 1024;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private long ttl = DEFAULT_TTL;
+	private long offHeapBytes = 0;
+	private int offHeapSlabSize = DEFAULT_OFF_HEAP_SLAB_SIZE;
+	private File offHeapDirectory = null;
+
+	private CachePolicy() {
+	}
+
+	public static final CachePolicy create() {
+		return new CachePolicy();
+	}
+
+	/**
+	 * estimated heap bytes of the cached results
+	 */
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	public CachePolicy maxBytes(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	/**
+	 * milliseconds a cached result stays valid
+	 */
+	public long ttl() {
+		return ttl;
+	}
+
+	public CachePolicy ttl(long ttl) {
+		this.ttl = ttl;
+		return this;
+	}
+
+	/**
+	 * size of the off-heap tier behind the on-heap cache, 0 to disable
+	 */
+	public long offHeapBytes() {
+		return offHeapBytes;
+	}
+
+	public CachePolicy offHeapBytes(long offHeapBytes) {
+		this.offHeapBytes = offHeapBytes;
+		return this;
+	}
+
+	/**
+	 * bytes of one off-heap slab, the unit of off-heap eviction and the largest cacheable row
+	 */
+	public int offHeapSlabSize() {
+		return offHeapSlabSize;
+	}
+
+	public CachePolicy offHeapSlabSize(int offHeapSlabSize) {
+		if (offHeapSlabSize <= 0) {
+			throw new IllegalArgumentException("offHeapSlabSize must be positive");
+		}
+
+		this.offHeapSlabSize = offHeapSlabSize;
+		return this;
+	}
+
+	/**
+	 * directory of memory-mapped slab files, null for direct buffers
+	 */
+	public File offHeapDirectory() {
+		return offHeapDirectory;
+	}
+
+	public CachePolicy offHeapDirectory(File offHeapDirectory) {
+		this.offHeapDirectory = offHeapDirectory;
+		return this;
+	}
+}
@@ -0,0 +1,112 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs async results and callbacks off the batch workers.
+ * <p>
+ * With lanes, callbacks of the same row key are delivered one at a time in the order the batches
+ * completed them; each lane is a serial queue drained on the shared executor.
+ */
+class CallbackDispatcher {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CallbackDispatcher.class);
+	private final Executor executor;
+	private final Lane[] lanes;
+	private final LongAdder queued;
+	private final LongAdder dispatched;
+	private final LongAdder waitNanos;
+	private final LongAdder failures;
+
+	/**
+	 * @param lanes number of ordered lanes, 0 for unordered delivery
+	 */
+	CallbackDispatcher(Executor executor, int lanes, HBaseMetrics metrics) {
+		this.executor = executor;
+		this.lanes = new Lane[lanes];
+		for (int i = 0; i < lanes; i++) {
+			this.lanes[i] = new Lane();
+		}
+
+		this.queued = metrics.counter("callbacks.queued");
+		this.dispatched = metrics.counter("callbacks.dispatched");
+		this.waitNanos = metrics.counter("callbacks.wait_nanos");
+		this.failures = metrics.counter("callbacks.failures");
+		metrics.gauge("callbacks.pending", () -> queued.sum() - dispatched.sum());
+	}
+
+	/**
+	 * @throws RejectedExecutionException when the executor refuses the callback, which is then not queued
+	 */
+	void dispatch(byte[] row, Runnable callback) {
+		long queuedTime = System.nanoTime();
+		Runnable task = () -> {
+			waitNanos.add(System.nanoTime() - queuedTime);
+			dispatched.increment();
+			try {
+				callback.run();
+			} catch (Throwable throwable) {
+				failures.increment();
+				LOGGER.error("callback failed", throwable);
+			}
+		};
+
+		queued.increment();
+		try {
+			if (lanes.length == 0) {
+				executor.execute(task);
+			} else {
+				lanes[(Bytes.hashCode(row) & Integer.MAX_VALUE) % lanes.length].execute(task);
+			}
+		} catch (RejectedExecutionException e) {
+			queued.decrement();
+			throw e;
+		}
+	}
+
+	private class Lane {
+		private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean running = new AtomicBoolean(false);
+
+		void execute(Runnable task) {
+			tasks.offer(task);
+			try {
+				schedule();
+			} catch (RejectedExecutionException e) {
+				// tasks queued before stay for the next schedule
+				tasks.remove(task);
+				throw e;
+			}
+		}
+
+		private void schedule() {
+			if (running.compareAndSet(false, true)) {
+				try {
+					executor.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					running.set(false);
+					throw e;
+				}
+			}
+		}
+
+		private void drain() {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				task.run();
+			}
+
+			running.set(false);
+			if (!tasks.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+}
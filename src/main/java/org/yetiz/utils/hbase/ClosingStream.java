@@ -0,0 +1,890 @@
+package org.yetiz.utils.hbase;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * <code>Stream</code> over a scanner that closes itself once a terminal operation returns, including
+ * short-circuiting ones like <code>findFirst</code>, <code>anyMatch</code> or a <code>limit</code>ed
+ * <code>forEach</code>, so a scanner is not leaked when the stream is not read to the end.
+ * <p>
+ * Intermediate operations keep the wrapping, primitive streams included; <code>iterator()</code> and
+ * <code>spliterator()</code> hand the scanner over to the caller, who closes it or reads it to the end.
+ */
+class ClosingStream<T> implements Stream<T> {
+	private final Stream<T> delegate;
+
+	ClosingStream(Stream<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	private <R> Stream<R> wrap(Stream<R> stream) {
+		return new ClosingStream<>(stream);
+	}
+
+	private <R> R terminal(Function<Stream<T>, R> operation) {
+		try {
+			return operation.apply(delegate);
+		} finally {
+			delegate.close();
+		}
+	}
+
+	@Override
+	public Stream<T> filter(Predicate<? super T> predicate) {
+		return wrap(delegate.filter(predicate));
+	}
+
+	@Override
+	public <R> Stream<R> map(Function<? super T, ? extends R> mapper) {
+		return wrap(delegate.map(mapper));
+	}
+
+	@Override
+	public IntStream mapToInt(ToIntFunction<? super T> mapper) {
+		return new ClosingIntStream(delegate.mapToInt(mapper));
+	}
+
+	@Override
+	public LongStream mapToLong(ToLongFunction<? super T> mapper) {
+		return new ClosingLongStream(delegate.mapToLong(mapper));
+	}
+
+	@Override
+	public DoubleStream mapToDouble(ToDoubleFunction<? super T> mapper) {
+		return new ClosingDoubleStream(delegate.mapToDouble(mapper));
+	}
+
+	@Override
+	public <R> Stream<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
+		return wrap(delegate.flatMap(mapper));
+	}
+
+	@Override
+	public IntStream flatMapToInt(Function<? super T, ? extends IntStream> mapper) {
+		return new ClosingIntStream(delegate.flatMapToInt(mapper));
+	}
+
+	@Override
+	public LongStream flatMapToLong(Function<? super T, ? extends LongStream> mapper) {
+		return new ClosingLongStream(delegate.flatMapToLong(mapper));
+	}
+
+	@Override
+	public DoubleStream flatMapToDouble(Function<? super T, ? extends DoubleStream> mapper) {
+		return new ClosingDoubleStream(delegate.flatMapToDouble(mapper));
+	}
+
+	@Override
+	public Stream<T> distinct() {
+		return wrap(delegate.distinct());
+	}
+
+	@Override
+	public Stream<T> sorted() {
+		return wrap(delegate.sorted());
+	}
+
+	@Override
+	public Stream<T> sorted(Comparator<? super T> comparator) {
+		return wrap(delegate.sorted(comparator));
+	}
+
+	@Override
+	public Stream<T> peek(Consumer<? super T> action) {
+		return wrap(delegate.peek(action));
+	}
+
+	@Override
+	public Stream<T> limit(long maxSize) {
+		return wrap(delegate.limit(maxSize));
+	}
+
+	@Override
+	public Stream<T> skip(long n) {
+		return wrap(delegate.skip(n));
+	}
+
+	@Override
+	public void forEach(Consumer<? super T> action) {
+		terminal(stream -> {
+			stream.forEach(action);
+			return null;
+		});
+	}
+
+	@Override
+	public void forEachOrdered(Consumer<? super T> action) {
+		terminal(stream -> {
+			stream.forEachOrdered(action);
+			return null;
+		});
+	}
+
+	@Override
+	public Object[] toArray() {
+		return terminal(Stream::toArray);
+	}
+
+	@Override
+	public <A> A[] toArray(IntFunction<A[]> generator) {
+		return terminal(stream -> stream.toArray(generator));
+	}
+
+	@Override
+	public T reduce(T identity, BinaryOperator<T> accumulator) {
+		return terminal(stream -> stream.reduce(identity, accumulator));
+	}
+
+	@Override
+	public Optional<T> reduce(BinaryOperator<T> accumulator) {
+		return terminal(stream -> stream.reduce(accumulator));
+	}
+
+	@Override
+	public <U> U reduce(U identity, BiFunction<U, ? super T, U> accumulator, BinaryOperator<U> combiner) {
+		return terminal(stream -> stream.reduce(identity, accumulator, combiner));
+	}
+
+	@Override
+	public <R> R collect(Supplier<R> supplier, BiConsumer<R, ? super T> accumulator, BiConsumer<R, R> combiner) {
+		return terminal(stream -> stream.collect(supplier, accumulator, combiner));
+	}
+
+	@Override
+	public <R, A> R collect(Collector<? super T, A, R> collector) {
+		return terminal(stream -> stream.collect(collector));
+	}
+
+	@Override
+	public Optional<T> min(Comparator<? super T> comparator) {
+		return terminal(stream -> stream.min(comparator));
+	}
+
+	@Override
+	public Optional<T> max(Comparator<? super T> comparator) {
+		return terminal(stream -> stream.max(comparator));
+	}
+
+	@Override
+	public long count() {
+		return terminal(Stream::count);
+	}
+
+	@Override
+	public boolean anyMatch(Predicate<? super T> predicate) {
+		return terminal(stream -> stream.anyMatch(predicate));
+	}
+
+	@Override
+	public boolean allMatch(Predicate<? super T> predicate) {
+		return terminal(stream -> stream.allMatch(predicate));
+	}
+
+	@Override
+	public boolean noneMatch(Predicate<? super T> predicate) {
+		return terminal(stream -> stream.noneMatch(predicate));
+	}
+
+	@Override
+	public Optional<T> findFirst() {
+		return terminal(Stream::findFirst);
+	}
+
+	@Override
+	public Optional<T> findAny() {
+		return terminal(Stream::findAny);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return delegate.iterator();
+	}
+
+	@Override
+	public Spliterator<T> spliterator() {
+		return delegate.spliterator();
+	}
+
+	@Override
+	public boolean isParallel() {
+		return delegate.isParallel();
+	}
+
+	@Override
+	public Stream<T> sequential() {
+		return wrap(delegate.sequential());
+	}
+
+	@Override
+	public Stream<T> parallel() {
+		return wrap(delegate.parallel());
+	}
+
+	@Override
+	public Stream<T> unordered() {
+		return wrap(delegate.unordered());
+	}
+
+	@Override
+	public Stream<T> onClose(Runnable closeHandler) {
+		return wrap(delegate.onClose(closeHandler));
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	/**
+	 * <code>IntStream</code> counterpart of <code>ClosingStream</code>.
+	 */
+	private static final class ClosingIntStream implements IntStream {
+		private final IntStream delegate;
+
+		ClosingIntStream(IntStream delegate) {
+			this.delegate = delegate;
+		}
+
+		private <R> R terminal(Function<IntStream, R> operation) {
+			try {
+				return operation.apply(delegate);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public IntStream filter(IntPredicate predicate) {
+			return new ClosingIntStream(delegate.filter(predicate));
+		}
+
+		@Override
+		public IntStream map(IntUnaryOperator mapper) {
+			return new ClosingIntStream(delegate.map(mapper));
+		}
+
+		@Override
+		public <U> Stream<U> mapToObj(IntFunction<? extends U> mapper) {
+			return new ClosingStream<>(delegate.mapToObj(mapper));
+		}
+
+		@Override
+		public LongStream mapToLong(IntToLongFunction mapper) {
+			return new ClosingLongStream(delegate.mapToLong(mapper));
+		}
+
+		@Override
+		public DoubleStream mapToDouble(IntToDoubleFunction mapper) {
+			return new ClosingDoubleStream(delegate.mapToDouble(mapper));
+		}
+
+		@Override
+		public IntStream flatMap(IntFunction<? extends IntStream> mapper) {
+			return new ClosingIntStream(delegate.flatMap(mapper));
+		}
+
+		@Override
+		public IntStream distinct() {
+			return new ClosingIntStream(delegate.distinct());
+		}
+
+		@Override
+		public IntStream sorted() {
+			return new ClosingIntStream(delegate.sorted());
+		}
+
+		@Override
+		public IntStream peek(IntConsumer action) {
+			return new ClosingIntStream(delegate.peek(action));
+		}
+
+		@Override
+		public IntStream limit(long maxSize) {
+			return new ClosingIntStream(delegate.limit(maxSize));
+		}
+
+		@Override
+		public IntStream skip(long n) {
+			return new ClosingIntStream(delegate.skip(n));
+		}
+
+		@Override
+		public void forEach(IntConsumer action) {
+			try {
+				delegate.forEach(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public void forEachOrdered(IntConsumer action) {
+			try {
+				delegate.forEachOrdered(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public int[] toArray() {
+			return terminal(stream -> stream.toArray());
+		}
+
+		@Override
+		public int reduce(int identity, IntBinaryOperator op) {
+			return terminal(stream -> stream.reduce(identity, op));
+		}
+
+		@Override
+		public OptionalInt reduce(IntBinaryOperator op) {
+			return terminal(stream -> stream.reduce(op));
+		}
+
+		@Override
+		public <R> R collect(Supplier<R> supplier, ObjIntConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+			return terminal(stream -> stream.collect(supplier, accumulator, combiner));
+		}
+
+		@Override
+		public int sum() {
+			return terminal(stream -> stream.sum());
+		}
+
+		@Override
+		public OptionalInt min() {
+			return terminal(stream -> stream.min());
+		}
+
+		@Override
+		public OptionalInt max() {
+			return terminal(stream -> stream.max());
+		}
+
+		@Override
+		public long count() {
+			return terminal(stream -> stream.count());
+		}
+
+		@Override
+		public OptionalDouble average() {
+			return terminal(stream -> stream.average());
+		}
+
+		@Override
+		public IntSummaryStatistics summaryStatistics() {
+			return terminal(stream -> stream.summaryStatistics());
+		}
+
+		@Override
+		public boolean anyMatch(IntPredicate predicate) {
+			return terminal(stream -> stream.anyMatch(predicate));
+		}
+
+		@Override
+		public boolean allMatch(IntPredicate predicate) {
+			return terminal(stream -> stream.allMatch(predicate));
+		}
+
+		@Override
+		public boolean noneMatch(IntPredicate predicate) {
+			return terminal(stream -> stream.noneMatch(predicate));
+		}
+
+		@Override
+		public OptionalInt findFirst() {
+			return terminal(stream -> stream.findFirst());
+		}
+
+		@Override
+		public OptionalInt findAny() {
+			return terminal(stream -> stream.findAny());
+		}
+
+		@Override
+		public LongStream asLongStream() {
+			return new ClosingLongStream(delegate.asLongStream());
+		}
+
+		@Override
+		public DoubleStream asDoubleStream() {
+			return new ClosingDoubleStream(delegate.asDoubleStream());
+		}
+
+		@Override
+		public Stream<Integer> boxed() {
+			return new ClosingStream<>(delegate.boxed());
+		}
+
+		@Override
+		public IntStream sequential() {
+			return new ClosingIntStream(delegate.sequential());
+		}
+
+		@Override
+		public IntStream parallel() {
+			return new ClosingIntStream(delegate.parallel());
+		}
+
+		@Override
+		public IntStream unordered() {
+			return new ClosingIntStream(delegate.unordered());
+		}
+
+		@Override
+		public IntStream onClose(Runnable closeHandler) {
+			return new ClosingIntStream(delegate.onClose(closeHandler));
+		}
+
+		@Override
+		public PrimitiveIterator.OfInt iterator() {
+			return delegate.iterator();
+		}
+
+		@Override
+		public Spliterator.OfInt spliterator() {
+			return delegate.spliterator();
+		}
+
+		@Override
+		public boolean isParallel() {
+			return delegate.isParallel();
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+	}
+
+	/**
+	 * <code>LongStream</code> counterpart of <code>ClosingStream</code>.
+	 */
+	private static final class ClosingLongStream implements LongStream {
+		private final LongStream delegate;
+
+		ClosingLongStream(LongStream delegate) {
+			this.delegate = delegate;
+		}
+
+		private <R> R terminal(Function<LongStream, R> operation) {
+			try {
+				return operation.apply(delegate);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public LongStream filter(LongPredicate predicate) {
+			return new ClosingLongStream(delegate.filter(predicate));
+		}
+
+		@Override
+		public LongStream map(LongUnaryOperator mapper) {
+			return new ClosingLongStream(delegate.map(mapper));
+		}
+
+		@Override
+		public <U> Stream<U> mapToObj(LongFunction<? extends U> mapper) {
+			return new ClosingStream<>(delegate.mapToObj(mapper));
+		}
+
+		@Override
+		public IntStream mapToInt(LongToIntFunction mapper) {
+			return new ClosingIntStream(delegate.mapToInt(mapper));
+		}
+
+		@Override
+		public DoubleStream mapToDouble(LongToDoubleFunction mapper) {
+			return new ClosingDoubleStream(delegate.mapToDouble(mapper));
+		}
+
+		@Override
+		public LongStream flatMap(LongFunction<? extends LongStream> mapper) {
+			return new ClosingLongStream(delegate.flatMap(mapper));
+		}
+
+		@Override
+		public LongStream distinct() {
+			return new ClosingLongStream(delegate.distinct());
+		}
+
+		@Override
+		public LongStream sorted() {
+			return new ClosingLongStream(delegate.sorted());
+		}
+
+		@Override
+		public LongStream peek(LongConsumer action) {
+			return new ClosingLongStream(delegate.peek(action));
+		}
+
+		@Override
+		public LongStream limit(long maxSize) {
+			return new ClosingLongStream(delegate.limit(maxSize));
+		}
+
+		@Override
+		public LongStream skip(long n) {
+			return new ClosingLongStream(delegate.skip(n));
+		}
+
+		@Override
+		public void forEach(LongConsumer action) {
+			try {
+				delegate.forEach(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public void forEachOrdered(LongConsumer action) {
+			try {
+				delegate.forEachOrdered(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public long[] toArray() {
+			return terminal(stream -> stream.toArray());
+		}
+
+		@Override
+		public long reduce(long identity, LongBinaryOperator op) {
+			return terminal(stream -> stream.reduce(identity, op));
+		}
+
+		@Override
+		public OptionalLong reduce(LongBinaryOperator op) {
+			return terminal(stream -> stream.reduce(op));
+		}
+
+		@Override
+		public <R> R collect(Supplier<R> supplier, ObjLongConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+			return terminal(stream -> stream.collect(supplier, accumulator, combiner));
+		}
+
+		@Override
+		public long sum() {
+			return terminal(stream -> stream.sum());
+		}
+
+		@Override
+		public OptionalLong min() {
+			return terminal(stream -> stream.min());
+		}
+
+		@Override
+		public OptionalLong max() {
+			return terminal(stream -> stream.max());
+		}
+
+		@Override
+		public long count() {
+			return terminal(stream -> stream.count());
+		}
+
+		@Override
+		public OptionalDouble average() {
+			return terminal(stream -> stream.average());
+		}
+
+		@Override
+		public LongSummaryStatistics summaryStatistics() {
+			return terminal(stream -> stream.summaryStatistics());
+		}
+
+		@Override
+		public boolean anyMatch(LongPredicate predicate) {
+			return terminal(stream -> stream.anyMatch(predicate));
+		}
+
+		@Override
+		public boolean allMatch(LongPredicate predicate) {
+			return terminal(stream -> stream.allMatch(predicate));
+		}
+
+		@Override
+		public boolean noneMatch(LongPredicate predicate) {
+			return terminal(stream -> stream.noneMatch(predicate));
+		}
+
+		@Override
+		public OptionalLong findFirst() {
+			return terminal(stream -> stream.findFirst());
+		}
+
+		@Override
+		public OptionalLong findAny() {
+			return terminal(stream -> stream.findAny());
+		}
+
+		@Override
+		public DoubleStream asDoubleStream() {
+			return new ClosingDoubleStream(delegate.asDoubleStream());
+		}
+
+		@Override
+		public Stream<Long> boxed() {
+			return new ClosingStream<>(delegate.boxed());
+		}
+
+		@Override
+		public LongStream sequential() {
+			return new ClosingLongStream(delegate.sequential());
+		}
+
+		@Override
+		public LongStream parallel() {
+			return new ClosingLongStream(delegate.parallel());
+		}
+
+		@Override
+		public LongStream unordered() {
+			return new ClosingLongStream(delegate.unordered());
+		}
+
+		@Override
+		public LongStream onClose(Runnable closeHandler) {
+			return new ClosingLongStream(delegate.onClose(closeHandler));
+		}
+
+		@Override
+		public PrimitiveIterator.OfLong iterator() {
+			return delegate.iterator();
+		}
+
+		@Override
+		public Spliterator.OfLong spliterator() {
+			return delegate.spliterator();
+		}
+
+		@Override
+		public boolean isParallel() {
+			return delegate.isParallel();
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+	}
+
+	/**
+	 * <code>DoubleStream</code> counterpart of <code>ClosingStream</code>.
+	 */
+	private static final class ClosingDoubleStream implements DoubleStream {
+		private final DoubleStream delegate;
+
+		ClosingDoubleStream(DoubleStream delegate) {
+			this.delegate = delegate;
+		}
+
+		private <R> R terminal(Function<DoubleStream, R> operation) {
+			try {
+				return operation.apply(delegate);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public DoubleStream filter(DoublePredicate predicate) {
+			return new ClosingDoubleStream(delegate.filter(predicate));
+		}
+
+		@Override
+		public DoubleStream map(DoubleUnaryOperator mapper) {
+			return new ClosingDoubleStream(delegate.map(mapper));
+		}
+
+		@Override
+		public <U> Stream<U> mapToObj(DoubleFunction<? extends U> mapper) {
+			return new ClosingStream<>(delegate.mapToObj(mapper));
+		}
+
+		@Override
+		public IntStream mapToInt(DoubleToIntFunction mapper) {
+			return new ClosingIntStream(delegate.mapToInt(mapper));
+		}
+
+		@Override
+		public LongStream mapToLong(DoubleToLongFunction mapper) {
+			return new ClosingLongStream(delegate.mapToLong(mapper));
+		}
+
+		@Override
+		public DoubleStream flatMap(DoubleFunction<? extends DoubleStream> mapper) {
+			return new ClosingDoubleStream(delegate.flatMap(mapper));
+		}
+
+		@Override
+		public DoubleStream distinct() {
+			return new ClosingDoubleStream(delegate.distinct());
+		}
+
+		@Override
+		public DoubleStream sorted() {
+			return new ClosingDoubleStream(delegate.sorted());
+		}
+
+		@Override
+		public DoubleStream peek(DoubleConsumer action) {
+			return new ClosingDoubleStream(delegate.peek(action));
+		}
+
+		@Override
+		public DoubleStream limit(long maxSize) {
+			return new ClosingDoubleStream(delegate.limit(maxSize));
+		}
+
+		@Override
+		public DoubleStream skip(long n) {
+			return new ClosingDoubleStream(delegate.skip(n));
+		}
+
+		@Override
+		public void forEach(DoubleConsumer action) {
+			try {
+				delegate.forEach(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public void forEachOrdered(DoubleConsumer action) {
+			try {
+				delegate.forEachOrdered(action);
+			} finally {
+				delegate.close();
+			}
+		}
+
+		@Override
+		public double[] toArray() {
+			return terminal(stream -> stream.toArray());
+		}
+
+		@Override
+		public double reduce(double identity, DoubleBinaryOperator op) {
+			return terminal(stream -> stream.reduce(identity, op));
+		}
+
+		@Override
+		public OptionalDouble reduce(DoubleBinaryOperator op) {
+			return terminal(stream -> stream.reduce(op));
+		}
+
+		@Override
+		public <R> R collect(Supplier<R> supplier, ObjDoubleConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+			return terminal(stream -> stream.collect(supplier, accumulator, combiner));
+		}
+
+		@Override
+		public double sum() {
+			return terminal(stream -> stream.sum());
+		}
+
+		@Override
+		public OptionalDouble min() {
+			return terminal(stream -> stream.min());
+		}
+
+		@Override
+		public OptionalDouble max() {
+			return terminal(stream -> stream.max());
+		}
+
+		@Override
+		public long count() {
+			return terminal(stream -> stream.count());
+		}
+
+		@Override
+		public OptionalDouble average() {
+			return terminal(stream -> stream.average());
+		}
+
+		@Override
+		public DoubleSummaryStatistics summaryStatistics() {
+			return terminal(stream -> stream.summaryStatistics());
+		}
+
+		@Override
+		public boolean anyMatch(DoublePredicate predicate) {
+			return terminal(stream -> stream.anyMatch(predicate));
+		}
+
+		@Override
+		public boolean allMatch(DoublePredicate predicate) {
+			return terminal(stream -> stream.allMatch(predicate));
+		}
+
+		@Override
+		public boolean noneMatch(DoublePredicate predicate) {
+			return terminal(stream -> stream.noneMatch(predicate));
+		}
+
+		@Override
+		public OptionalDouble findFirst() {
+			return terminal(stream -> stream.findFirst());
+		}
+
+		@Override
+		public OptionalDouble findAny() {
+			return terminal(stream -> stream.findAny());
+		}
+
+		@Override
+		public Stream<Double> boxed() {
+			return new ClosingStream<>(delegate.boxed());
+		}
+
+		@Override
+		public DoubleStream sequential() {
+			return new ClosingDoubleStream(delegate.sequential());
+		}
+
+		@Override
+		public DoubleStream parallel() {
+			return new ClosingDoubleStream(delegate.parallel());
+		}
+
+		@Override
+		public DoubleStream unordered() {
+			return new ClosingDoubleStream(delegate.unordered());
+		}
+
+		@Override
+		public DoubleStream onClose(Runnable closeHandler) {
+			return new ClosingDoubleStream(delegate.onClose(closeHandler));
+		}
+
+		@Override
+		public PrimitiveIterator.OfDouble iterator() {
+			return delegate.iterator();
+		}
+
+		@Override
+		public Spliterator.OfDouble spliterator() {
+			return delegate.spliterator();
+		}
+
+		@Override
+		public boolean isParallel() {
+			return delegate.isParallel();
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * AIMD limit of the extra batch workers a busy fast/async queue may spawn.
+ * <p>
+ * The limit grows by one after <code>limit</code> consecutive batches whose latency stays within
+ * <code>tolerance</code> times the baseline, and is halved as soon as a batch is slower than that.
+ */
+class ConcurrencyController {
+	private static final double DEFAULT_TOLERANCE = 2.0;
+	private static final double BASELINE_FAST_WEIGHT = 0.05;
+	private static final double BASELINE_SLOW_WEIGHT = 0.01;
+	private final int min;
+	private final int max;
+	private final double tolerance;
+	private volatile int limit;
+	private volatile int inFlight = 0;
+	private double baseline = -1;
+	private int flatSamples = 0;
+
+	ConcurrencyController(int min, int max) {
+		this(min, max, DEFAULT_TOLERANCE);
+	}
+
+	ConcurrencyController(int min, int max, double tolerance) {
+		this.min = min;
+		this.max = Math.max(min, max);
+		this.tolerance = tolerance;
+		this.limit = min;
+	}
+
+	synchronized boolean tryAcquire() {
+		if (inFlight >= limit) {
+			return false;
+		}
+
+		inFlight++;
+		return true;
+	}
+
+	synchronized void release() {
+		inFlight--;
+	}
+
+	synchronized void sample(long latencyNanos) {
+		if (baseline < 0) {
+			baseline = latencyNanos;
+			return;
+		}
+
+		if (latencyNanos <= baseline * tolerance) {
+			baseline = latencyNanos < baseline
+				? latencyNanos
+				: baseline + (latencyNanos - baseline) * BASELINE_FAST_WEIGHT;
+			if (++flatSamples >= limit) {
+				limit = Math.min(max, limit + 1);
+				flatSamples = 0;
+			}
+		} else {
+			// keep following the cluster when it gets slower for good
+			baseline += (latencyNanos - baseline) * BASELINE_SLOW_WEIGHT;
+			limit = Math.max(min, limit / 2);
+			flatSamples = 0;
+		}
+	}
+
+	int limit() {
+		return limit;
+	}
+
+	int inFlight() {
+		return inFlight;
+	}
+}
@@ -0,0 +1,16 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * How the <code>fast()</code> worker sends drained rows.
+ */
+public enum FastWriteMode {
+	/**
+	 * <code>Table.batch</code> per drained batch, grouped by region server
+	 */
+	BATCH,
+	/**
+	 * long-lived per-table <code>BufferedMutator</code> for Put and Delete,
+	 * other actions still go through <code>BATCH</code>
+	 */
+	BUFFERED_MUTATOR
+}
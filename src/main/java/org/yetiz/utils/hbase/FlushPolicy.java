@@ -0,0 +1,62 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * When a fast/async worker cuts the rows it collected into one batch: whichever of
+ * <code>maxRows</code>, <code>maxBytes</code> or <code>linger</code> is reached first.
+ */
+public final class FlushPolicy {
+	public static final int DEFAULT_MAX_ROWS = 5000;
+	public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+	public static final long DEFAULT_LINGER = 10;
+	private volatile int maxRows = DEFAULT_MAX_ROWS;
+	private volatile long maxBytes = DEFAULT_MAX_BYTES;
+	private volatile long linger = DEFAULT_LINGER;
+
+	private FlushPolicy() {
+	}
+
+	public static final FlushPolicy create() {
+		return new FlushPolicy();
+	}
+
+	public int maxRows() {
+		return maxRows;
+	}
+
+	public FlushPolicy maxRows(int maxRows) {
+		if (maxRows <= 0) {
+			throw new IllegalArgumentException("maxRows must be positive");
+		}
+
+		this.maxRows = maxRows;
+		return this;
+	}
+
+	/**
+	 * accumulated heap bytes of the batch, see <code>HBaseClient.heapSize(Row)</code>
+	 */
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	public FlushPolicy maxBytes(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	/**
+	 * milliseconds to wait for more rows after the first row of a batch arrived
+	 */
+	public long linger() {
+		return linger;
+	}
+
+	public FlushPolicy linger(long linger) {
+		this.linger = linger;
+		return this;
+	}
+}
@@ -0,0 +1,160 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.*;
+
+/**
+ * Merge the Gets of one async batch that read the same row into a single Get, unioning the requested
+ * families and columns, and cut the merged <code>Result</code> back to what every waiting Get asked for.
+ * <p>
+ * Only plain Gets are merged: no filter, no existence check, no per family limits, and the same
+ * versions, time range and consistency.
+ */
+class GetCoalescer {
+
+	/**
+	 * @return groups of packages sharing one action, in first-seen order; a group of one keeps its own action
+	 */
+	static List<Group> group(List<HAsyncTable.AsyncPackage> packages) {
+		List<Group> groups = new ArrayList<>(packages.size());
+		TreeMap<byte[], List<Group>> byRow = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+		for (HAsyncTable.AsyncPackage asyncPackage : packages) {
+			if (!(asyncPackage.action instanceof Get) || !mergeable((Get) asyncPackage.action)) {
+				groups.add(new Group(asyncPackage));
+				continue;
+			}
+
+			Get get = (Get) asyncPackage.action;
+			List<Group> candidates = byRow.computeIfAbsent(get.getRow(), key -> new ArrayList<>());
+			Group target = null;
+			for (Group candidate : candidates) {
+				if (compatible((Get) candidate.first().action, get)) {
+					target = candidate;
+					break;
+				}
+			}
+
+			if (target == null) {
+				target = new Group(asyncPackage);
+				candidates.add(target);
+				groups.add(target);
+			} else {
+				target.members.add(asyncPackage);
+			}
+		}
+
+		groups.forEach(Group::merge);
+		return groups;
+	}
+
+	private static boolean mergeable(Get get) {
+		return get.getFilter() == null
+			&& !get.isCheckExistenceOnly()
+			&& !get.isClosestRowBefore()
+			&& get.getMaxResultsPerColumnFamily() == -1
+			&& get.getRowOffsetPerColumnFamily() == 0
+			&& get.getAttributesMap().isEmpty();
+	}
+
+	private static boolean compatible(Get a, Get b) {
+		TimeRange ar = a.getTimeRange();
+		TimeRange br = b.getTimeRange();
+		return a.getMaxVersions() == b.getMaxVersions()
+			&& ar.getMin() == br.getMin()
+			&& ar.getMax() == br.getMax()
+			&& a.getConsistency() == b.getConsistency()
+			&& a.getReplicaId() == b.getReplicaId()
+			&& a.getCacheBlocks() == b.getCacheBlocks();
+	}
+
+	/**
+	 * @return the cells of <code>merged</code> that <code>get</code> requested
+	 */
+	static Result project(Get get, Get merged, Result result) {
+		if (get == merged || result == null || result.isEmpty() || !get.hasFamilies()) {
+			return result;
+		}
+
+		Map<byte[], NavigableSet<byte[]>> families = get.getFamilyMap();
+		List<Cell> cells = new ArrayList<>();
+		for (Cell cell : result.rawCells()) {
+			for (Map.Entry<byte[], NavigableSet<byte[]>> entry : families.entrySet()) {
+				if (!CellUtil.matchingFamily(cell, entry.getKey())) {
+					continue;
+				}
+
+				if (entry.getValue() == null || entry.getValue().isEmpty()) {
+					cells.add(cell);
+					break;
+				}
+
+				for (byte[] qualifier : entry.getValue()) {
+					if (CellUtil.matchingQualifier(cell, qualifier)) {
+						cells.add(cell);
+						break;
+					}
+				}
+
+				break;
+			}
+		}
+
+		return Result.create(cells, result.getExists(), result.isStale());
+	}
+
+	static class Group {
+		final List<HAsyncTable.AsyncPackage> members = new ArrayList<>(1);
+		ActionPackage action;
+
+		Group(HAsyncTable.AsyncPackage first) {
+			members.add(first);
+		}
+
+		HAsyncTable.AsyncPackage first() {
+			return members.get(0);
+		}
+
+		private void merge() {
+			if (members.size() == 1) {
+				action = first();
+				return;
+			}
+
+			Get first = (Get) first().action;
+			Get merged = new Get(first.getRow());
+			try {
+				merged.setMaxVersions(first.getMaxVersions())
+					.setTimeRange(first.getTimeRange().getMin(), first.getTimeRange().getMax())
+					.setCacheBlocks(first.getCacheBlocks());
+			} catch (Throwable throwable) {
+				throw new IllegalStateException(throwable);
+			}
+
+			merged.setConsistency(first.getConsistency());
+			merged.setReplicaId(first.getReplicaId());
+			boolean wholeRow = members.stream().anyMatch(member -> !((Get) member.action).hasFamilies());
+			if (!wholeRow) {
+				TreeMap<byte[], Boolean> wholeFamilies = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+				members.forEach(member -> ((Get) member.action).getFamilyMap().forEach((family, qualifiers) -> {
+					if (qualifiers == null || qualifiers.isEmpty()) {
+						wholeFamilies.put(family, true);
+					}
+				}));
+				wholeFamilies.keySet().forEach(merged::addFamily);
+				members.forEach(member -> ((Get) member.action).getFamilyMap().forEach((family, qualifiers) -> {
+					if (!wholeFamilies.containsKey(family)) {
+						qualifiers.forEach(qualifier -> merged.addColumn(family, qualifier));
+					}
+				}));
+			}
+
+			action = new ActionPackage(merged);
+		}
+	}
+}
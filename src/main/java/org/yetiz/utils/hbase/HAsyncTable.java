@@ -1,26 +1,44 @@
 package org.yetiz.utils.hbase;
 
 import org.apache.hadoop.hbase.client.*;
+import org.yetiz.utils.hbase.exception.UnHandledException;
 import org.yetiz.utils.hbase.utils.CallbackTask;
 import org.yetiz.utils.hbase.utils.ResultTask;
 import org.yetiz.utils.hbase.utils.Task;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by yeti on 16/4/14.
  */
 public class HAsyncTable {
 
-	private LinkedBlockingQueue<AsyncPackage> asyncQueue;
+	private WriteQueue<AsyncPackage> asyncQueue;
+	private HedgedReader hedger;
 
-	public HAsyncTable(LinkedBlockingQueue<AsyncPackage> asyncQueue) {
+	public HAsyncTable(WriteQueue<AsyncPackage> asyncQueue) {
+		this(asyncQueue, null);
+	}
+
+	HAsyncTable(WriteQueue<AsyncPackage> asyncQueue, HedgedReader hedger) {
 		this.asyncQueue = asyncQueue;
+		this.hedger = hedger;
 	}
 
+	/**
+	 * hedged to the region replicas when hedged reads are configured and the table has replicas
+	 */
 	public void get(Get get, ResultTask callback) {
-		asyncQueue.offer(new AsyncPackage(get, callback));
+		if (hedger == null) {
+			asyncQueue.offer(new AsyncPackage(get, callback));
+			return;
+		}
+
+		asyncQueue.offer(new AsyncPackage(hedger.hedged(get),
+			(ResultTask) result -> callback.callback(hedger.observe(result))));
 	}
 
 	public void append(Append append, ResultTask callback) {
@@ -44,13 +62,104 @@ public class HAsyncTable {
 			.forEach(row -> asyncQueue.offer(new AsyncPackage(row, task)));
 	}
 
-	public class AsyncPackage {
-		protected Row action;
+	/**
+	 * hedged to the region replicas when hedged reads are configured and the table has replicas,
+	 * a replica answer carries <code>Result.isStale()</code>
+	 *
+	 * @return completes exceptionally with the row error reported by the batch
+	 */
+	public CompletableFuture<Result> get(Get get) {
+		if (hedger == null) {
+			return submit(get);
+		}
+
+		return submit(hedger.hedged(get)).thenApply(hedger::observe);
+	}
+
+	public CompletableFuture<Result> append(Append append) {
+		return submit(append);
+	}
+
+	public CompletableFuture<Result> increment(Increment increment) {
+		return submit(increment);
+	}
+
+	public CompletableFuture<Void> put(Put put) {
+		return submit(put).thenApply(result -> null);
+	}
+
+	public CompletableFuture<Void> delete(Delete delete) {
+		return submit(delete).thenApply(result -> null);
+	}
+
+	/**
+	 * @return one future per row, in the order of <code>rows</code>
+	 */
+	public List<CompletableFuture<Result>> batch(List<? extends Row> rows) {
+		List<CompletableFuture<Result>> futures = new ArrayList<>(rows.size());
+		rows.forEach(row -> futures.add(submit(row)));
+		return futures;
+	}
+
+	private CompletableFuture<Result> submit(Row action) {
+		AsyncPackage asyncPackage = new AsyncPackage(action, null);
+		try {
+			asyncQueue.offer(asyncPackage);
+		} catch (Throwable throwable) {
+			asyncPackage.complete(null, throwable);
+			return asyncPackage.future;
+		}
+
+		return asyncPackage.future;
+	}
+
+	public class AsyncPackage extends ActionPackage {
+		protected final CompletableFuture<Result> future = new CompletableFuture<>();
 		protected Task callback;
+		private final AtomicBoolean completed = new AtomicBoolean(false);
 
 		public AsyncPackage(Row action, Task callback) {
-			this.action = action;
+			super(action);
 			this.callback = callback;
 		}
+
+		/**
+		 * @param result  the row entry of the batch results, a <code>Result</code> or a <code>Throwable</code>
+		 * @param failure the exception of the whole batch, if any
+		 * @return false when the package was already completed
+		 */
+		protected boolean complete(Object result, Throwable failure) {
+			if (!completed.compareAndSet(false, true)) {
+				return false;
+			}
+
+			if (result instanceof Result) {
+				future.complete((Result) result);
+				try {
+					if (callback instanceof ResultTask) {
+						((ResultTask) callback).callback((Result) result);
+					}
+
+					if (callback instanceof CallbackTask) {
+						((CallbackTask) callback).callback();
+					}
+				} catch (Throwable throwable) {
+				}
+
+				return true;
+			}
+
+			if (result instanceof Throwable) {
+				future.completeExceptionally((Throwable) result);
+			} else {
+				future.completeExceptionally(failure != null ? failure : new UnHandledException("no result"));
+			}
+
+			return true;
+		}
+
+		boolean completed() {
+			return completed.get();
+		}
 	}
 }
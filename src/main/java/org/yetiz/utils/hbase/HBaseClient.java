@@ -5,53 +5,142 @@ import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.client.coprocessor.AggregationClient;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yetiz.utils.hbase.exception.DataSourceException;
+import org.yetiz.utils.hbase.exception.QueueFullException;
 import org.yetiz.utils.hbase.exception.UnHandledException;
 import org.yetiz.utils.hbase.exception.YHBaseException;
-import org.yetiz.utils.hbase.utils.CallbackTask;
-import org.yetiz.utils.hbase.utils.ResultTask;
-import org.yetiz.utils.hbase.utils.Task;
+import org.yetiz.utils.hbase.utils.DeadLetterHandler;
 
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Created by yeti on 16/4/1.
  */
 public final class HBaseClient {
 	public static final Charset DEFAULT_CHARSET = Charset.forName("utf-8");
-	private static final int DEFAULT_MAX_FAST_BATCH_COUNT = 5000;
-	private static final int DEFAULT_MAX_ASYNC_BATCH_COUNT = 5000;
-	private static final ExecutorService EXECUTOR =
-		new ThreadPoolExecutor(0, Integer.MAX_VALUE, 5L, TimeUnit.SECONDS, new SynchronousQueue<>());
+	private static final int DEFAULT_MAX_IN_FLIGHT_PER_SERVER = 2;
+	private static final long DEFAULT_WRITE_BUFFER_SIZE = 4L * 1024 * 1024;
+	private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	private static final int DEFAULT_MAX_BATCH_WORKERS = 16;
+	private static final int DEFAULT_DISPATCH_THREADS = 32;
+	private static final int DEFAULT_LOOP_THREADS = 256;
+	private static final int DEFAULT_READ_THREADS = 32;
+	private static final int POOL_QUEUE_PER_THREAD = 16;
+	private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 100;
+	private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+	private static final int DEFAULT_CALLBACK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
 	private static final AtomicLong INCREMENT_ID = new AtomicLong(0);
-	protected final HashMap<TableName, LinkedBlockingQueue<Row>>
+	protected final HashMap<TableName, WriteQueue<ActionPackage>>
 		fastCollection = new HashMap<>();
-	protected final HashMap<TableName, LinkedBlockingQueue<HAsyncTable.AsyncPackage>>
+	protected final HashMap<TableName, WriteQueue<HAsyncTable.AsyncPackage>>
 		asyncCollection = new HashMap<>();
+	private final HashMap<TableName, QueueLimit> fastQueueLimits = new HashMap<>();
+	private final HashMap<TableName, QueueLimit> asyncQueueLimits = new HashMap<>();
+	private final HashMap<TableName, FlushPolicy> fastFlushPolicies = new HashMap<>();
+	private final HashMap<TableName, FlushPolicy> asyncFlushPolicies = new HashMap<>();
+	private final HashMap<TableName, FastWriteMode> fastWriteModes = new HashMap<>();
+	private final ConcurrentHashMap<TableName, BufferedMutator> mutators = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<TableName, AtomicLong> mutatorBytes = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<TableName, ConcurrentLinkedQueue<byte[]>> unflushedRows = new ConcurrentHashMap<>();
+	private final HashMap<TableName, CachePolicy> cachePolicies = new HashMap<>();
+	private final ConcurrentHashMap<TableName, RowCache> rowCaches = new ConcurrentHashMap<>();
+	private final HashMap<TableName, BloomPolicy> bloomPolicies = new HashMap<>();
+	private final HashMap<TableName, RowBloomFilter> bloomFilters = new HashMap<>();
+	private final HashMap<TableName, HedgePolicy> hedgePolicies = new HashMap<>();
+	private final HashMap<TableName, HedgedReader> hedgers = new HashMap<>();
+	private final HBaseMetrics metrics = new HBaseMetrics();
 	private final boolean reproducible;
 	private final String id = String.format("%s-%d", HBaseClient.class.getName(), INCREMENT_ID.getAndIncrement());
 	private final Logger logger = LoggerFactory.getLogger(id);
-	private volatile int fastBatchCount = DEFAULT_MAX_FAST_BATCH_COUNT - 1;
-	private volatile int asyncBatchCount = DEFAULT_MAX_ASYNC_BATCH_COUNT - 1;
+	private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, id + "-scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// retries waiting on the scheduler, dead-lettered when the client closes before they run
+	private final Set<Runnable> pendingRetries = ConcurrentHashMap.newKeySet();
+	// periodic BufferedMutator flushes block, keep them off the retry scheduler
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, id + "-flusher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final FlushPolicy fastFlushPolicy = FlushPolicy.create();
+	private final FlushPolicy asyncFlushPolicy = FlushPolicy.create();
 	private volatile boolean closed = false;
+	private QueueLimit fastQueueLimit = QueueLimit.create();
+	private QueueLimit asyncQueueLimit = QueueLimit.create();
+	private int maxInFlightPerServer = DEFAULT_MAX_IN_FLIGHT_PER_SERVER;
+	private FastWriteMode fastWriteMode = FastWriteMode.BATCH;
+	private boolean mergeFastMutations = false;
+	private long writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private int maxBatchWorkers = DEFAULT_MAX_BATCH_WORKERS;
+	private int dispatchThreads = DEFAULT_DISPATCH_THREADS;
+	private int loopThreads = DEFAULT_LOOP_THREADS;
+	private int readThreads = DEFAULT_READ_THREADS;
+	private int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+	private ThreadPoolExecutor loops;
+	private ThreadPoolExecutor workers;
+	private ThreadPoolExecutor dispatchers;
+	private ThreadPoolExecutor readers;
+	private ExecutorService callbackExecutor;
+	private boolean sharedCallbackExecutor = false;
+	private int callbackLanes = 0;
+	private CallbackDispatcher callbacks;
+	private ConcurrencyController controller;
+	private ServerDispatcher dispatcher;
+	private MultiGetter multiGetter;
+	private RetryPolicy retryPolicy = RetryPolicy.create();
+	private DeadLetterHandler deadLetterHandler = (tableName, action, cause) ->
+		logger.error(String.format("%s dead letter %s, %s",
+			tableName.get().getNameAsString(), Bytes.toStringBinary(action.getRow()), cause));
 	private Connection connection;
 	private Configuration configuration = HBaseConfiguration.create();
 
 	private HBaseClient(boolean reproducible) {
 		this.reproducible = reproducible;
+		this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
 	}
 
 	public static final byte[] bytes(String string) {
 		return string.getBytes(DEFAULT_CHARSET);
 	}
 
+	/**
+	 * Estimated heap size of a queued action, <code>Mutation.heapSize()</code> for mutations.
+	 */
+	public static final long heapSize(Row row) {
+		if (row instanceof Mutation) {
+			return ((Mutation) row).heapSize();
+		}
+
+		long size = ClassSize.OBJECT + ClassSize.REFERENCE * 4 + ClassSize.align(ClassSize.ARRAY + row.getRow().length);
+		if (row instanceof Get) {
+			for (Map.Entry<byte[], NavigableSet<byte[]>> entry : ((Get) row).getFamilyMap().entrySet()) {
+				size += ClassSize.align(ClassSize.ARRAY + entry.getKey().length);
+				if (entry.getValue() != null) {
+					for (byte[] qualifier : entry.getValue()) {
+						size += ClassSize.align(ClassSize.ARRAY + qualifier.length);
+					}
+				}
+			}
+		}
+
+		return ClassSize.align(size);
+	}
+
 	/**
 	 * Only for Get, Put, Delete, Append, Increment.<br>
 	 * With callback
@@ -59,11 +148,11 @@ public final class HBaseClient {
 	 * @return <code>Async</code>
 	 */
 	public HAsyncTable async(TableName tableName) {
-		return new HAsyncTable(asyncQueue(tableName));
+		return new HAsyncTable(asyncQueue(tableName), hedger(tableName));
 	}
 
 	public HAsyncTable async(Class<? extends HTableModel> model) {
-		return new HAsyncTable(asyncQueue(HTableModel.tableName(model)));
+		return async(HTableModel.tableName(model));
 	}
 
 	/**
@@ -85,23 +174,33 @@ public final class HBaseClient {
 	}
 
 	public int fastBatchCount() {
-		return fastBatchCount;
+		return fastFlushPolicy.maxRows();
 	}
 
+	/**
+	 * max rows of the default <code>fast()</code> <code>FlushPolicy</code>
+	 */
 	public HBaseClient setFastBatchCount(int fastBatchCount) {
-		this.fastBatchCount = fastBatchCount - 1;
+		fastFlushPolicy.maxRows(fastBatchCount);
 		return this;
 	}
 
 	public int asyncBatchCount() {
-		return asyncBatchCount;
+		return asyncFlushPolicy.maxRows();
 	}
 
+	/**
+	 * max rows of the default <code>async()</code> <code>FlushPolicy</code>
+	 */
 	public HBaseClient setAsyncBatchCount(int asyncBatchCount) {
-		this.asyncBatchCount = asyncBatchCount - 1;
+		asyncFlushPolicy.maxRows(asyncBatchCount);
 		return this;
 	}
 
+	public HBaseMetrics metrics() {
+		return metrics;
+	}
+
 	public HashMap<String, Integer> fastQueueCounts() {
 		HashMap<String, Integer> rtn = new HashMap<>();
 		fastCollection.entrySet()
@@ -117,7 +216,50 @@ public final class HBaseClient {
 	}
 
 	private void init() {
-		this.connection = newConnection();
+		HedgedReader.configure(configuration, hedgePolicies.values());
+		if (this.connection == null) {
+			this.connection = newConnection();
+		}
+
+		this.loops = new ThreadPoolExecutor(0, loopThreads, 60L, TimeUnit.SECONDS,
+			new SynchronousQueue<>(), threadFactory("loop"));
+		this.workers = new ThreadPoolExecutor(0, maxBatchWorkers, 5L, TimeUnit.SECONDS,
+			new SynchronousQueue<>(), threadFactory("worker"));
+		this.dispatchers = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 5L, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(dispatchThreads * POOL_QUEUE_PER_THREAD), threadFactory("dispatcher"),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+		this.dispatchers.allowCoreThreadTimeOut(true);
+		this.readers = new ThreadPoolExecutor(readThreads, readThreads, 5L, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(readThreads * POOL_QUEUE_PER_THREAD), threadFactory("reader"),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+		this.readers.allowCoreThreadTimeOut(true);
+		if (this.callbackExecutor == null) {
+			this.callbackExecutor = Executors.newFixedThreadPool(DEFAULT_CALLBACK_THREADS, threadFactory("callback"));
+		}
+
+		this.callbacks = new CallbackDispatcher(callbackExecutor, callbackLanes, metrics);
+		this.controller = new ConcurrencyController(1, maxBatchWorkers);
+		this.dispatcher = new ServerDispatcher(this, dispatchers, maxInFlightPerServer);
+		this.multiGetter = new MultiGetter(this, readers, multiGetChunkSize);
+		bloomPolicies.forEach(this::bloomFilter);
+		hedgePolicies.keySet().forEach(tableName -> hedgers.put(tableName, new HedgedReader(this, tableName)));
+		metrics.gauge("workers.concurrency", controller::limit);
+		metrics.gauge("workers.in_flight", controller::inFlight);
+		metrics.gauge("workers.threads", workers::getPoolSize);
+		metrics.gauge("dispatchers.threads", dispatchers::getPoolSize);
+		metrics.gauge("dispatchers.queued", () -> dispatchers.getQueue().size());
+		metrics.gauge("loops.threads", loops::getPoolSize);
+		metrics.gauge("readers.threads", readers::getPoolSize);
+		metrics.gauge("readers.queued", () -> readers.getQueue().size());
+	}
+
+	private ThreadFactory threadFactory(String name) {
+		AtomicLong count = new AtomicLong(0);
+		return runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s-%s-%d", id, name, count.getAndIncrement()));
+			thread.setDaemon(true);
+			return thread;
+		};
 	}
 
 	private Connection newConnection() {
@@ -140,14 +282,48 @@ public final class HBaseClient {
 	public void close() {
 		logger.debug("Close " + id());
 		this.closed = true;
+		loops.shutdown();
+		workers.shutdown();
 		try {
-			EXECUTOR.shutdown();
-			while (!EXECUTOR.awaitTermination(1, TimeUnit.SECONDS)) ;
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT);
+			terminate("loops", loops, deadline);
+			terminate("workers", workers, deadline);
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// before the callback executor, dead async rows still complete their callbacks
+		scheduler.shutdown();
+		new ArrayList<>(pendingRetries).forEach(Runnable::run);
+		dispatchers.shutdown();
+		readers.shutdown();
+		if (!sharedCallbackExecutor) {
+			callbackExecutor.shutdown();
 		}
+
+		flusher.shutdown();
+		mutators.values()
+			.forEach(mutator -> {
+				try {
+					mutator.close();
+				} catch (Throwable throwable) {
+					logger.error(throwable.toString());
+				}
+			});
+		rowCaches.values().forEach(RowCache::close);
 		logger.debug(id() + " Closed");
 	}
 
+	/**
+	 * wait for <code>executor</code> until <code>deadline</code>, then interrupt what is still running
+	 */
+	private void terminate(String name, ExecutorService executor, long deadline) throws InterruptedException {
+		if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+			logger.warn(String.format("%s %s still running after %d ms, interrupt them", id(), name, CLOSE_TIMEOUT));
+			executor.shutdownNow();
+		}
+	}
+
 	private String id() {
 		return id;
 	}
@@ -156,13 +332,13 @@ public final class HBaseClient {
 		return this.closed;
 	}
 
-	private void fastLoopTask(TableName tableName, LinkedBlockingQueue<Row> fastQueue, boolean isMaster) {
-		List<Row> rows = new ArrayList<>();
+	private void fastLoopTask(TableName tableName, WriteQueue<ActionPackage> fastQueue, boolean isMaster) {
+		List<ActionPackage> rows = new ArrayList<>();
 
 		while (!closed()) {
 			try {
-				Row row = fastQueue.poll(1, TimeUnit.SECONDS);
-				if (row == null) {
+				boolean full = fastQueue.collect(rows, fastFlushPolicy(tableName), 1, TimeUnit.SECONDS);
+				if (rows.isEmpty()) {
 					if (!isMaster) {
 						break;
 					}
@@ -170,22 +346,14 @@ public final class HBaseClient {
 					continue;
 				}
 
-				rows.add(row);
-				if (fastQueue.drainTo(rows, fastBatchCount()) == fastBatchCount() && reproducible) {
-					EXECUTOR.execute(() -> fastLoopTask(tableName, fastQueue, false));
+				if (full) {
+					spawnWorker(() -> fastLoopTask(tableName, fastQueue, false));
 				}
 
-				Object[] results = new Object[rows.size()];
-				HBaseTable table = null;
-				try {
-					table = table(tableName);
-					table.batch(rows, results);
-				} catch (Throwable throwable) {
-					throw convertedException(throwable);
-				} finally {
-					if (table != null) {
-						table.close();
-					}
+				long start = System.nanoTime();
+				fastBatch(tableName, rows);
+				if (full) {
+					controller.sample(System.nanoTime() - start);
 				}
 			} catch (Throwable throwable) {
 				logger.error(throwable.toString());
@@ -198,13 +366,266 @@ public final class HBaseClient {
 		}
 	}
 
-	protected LinkedBlockingQueue<Row> fastQueue(TableName tableName) {
+	private FlushPolicy fastFlushPolicy(TableName tableName) {
+		return fastFlushPolicies.getOrDefault(tableName, fastFlushPolicy);
+	}
+
+	private FlushPolicy asyncFlushPolicy(TableName tableName) {
+		return asyncFlushPolicies.getOrDefault(tableName, asyncFlushPolicy);
+	}
+
+	/**
+	 * Run an extra batch worker for a busy queue when <code>reproducible</code>, as long as the
+	 * concurrency controller allows it.
+	 */
+	private void spawnWorker(Runnable worker) {
+		if (!reproducible || !controller.tryAcquire()) {
+			return;
+		}
+
+		try {
+			workers.execute(() -> {
+				try {
+					worker.run();
+				} finally {
+					controller.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			controller.release();
+		}
+	}
+
+	private void fastBatch(TableName tableName, List<ActionPackage> packages) {
+		if (mergeFastMutations) {
+			int count = packages.size();
+			packages = MutationMerger.merge(packages);
+			metrics.counter("fast." + tableName.get().getNameAsString() + ".merged_mutations")
+				.add(count - packages.size());
+		}
+
+		if (fastWriteModes.getOrDefault(tableName, fastWriteMode) == FastWriteMode.BUFFERED_MUTATOR) {
+			List<Mutation> mutations = new ArrayList<>();
+			List<ActionPackage> buffered = new ArrayList<>();
+			List<ActionPackage> others = new ArrayList<>();
+			packages.forEach(fastPackage -> {
+				if (fastPackage.action instanceof Put || fastPackage.action instanceof Delete) {
+					mutations.add((Mutation) fastPackage.action);
+					buffered.add(fastPackage);
+				} else {
+					others.add(fastPackage);
+				}
+			});
+
+			if (!mutations.isEmpty()) {
+				try {
+					long size = 0;
+					for (Mutation mutation : mutations) {
+						beforeWrite(tableName, mutation);
+						size += mutation.heapSize();
+					}
+
+					BufferedMutator mutator = mutator(tableName);
+					AtomicLong bufferedBytes = mutatorBytes.get(tableName);
+					bufferedBytes.addAndGet(size);
+					mutator.mutate(mutations);
+					// the mutator sends its whole buffer by itself once it outgrows writeBufferSize
+					if (bufferedBytes.get() > writeBufferSize) {
+						bufferedBytes.set(0);
+					}
+				} catch (Throwable throwable) {
+					// the mutator did not take the rows, back off like a failed batch
+					buffered.forEach(fastPackage ->
+						retry("fast", tableName, fastQueue(tableName), fastPackage, throwable, null));
+				} finally {
+					if (rowCaches.containsKey(tableName)) {
+						ConcurrentLinkedQueue<byte[]> unflushed =
+							unflushedRows.computeIfAbsent(tableName, key -> new ConcurrentLinkedQueue<>());
+						mutations.forEach(mutation -> {
+							invalidate(tableName, mutation);
+							unflushed.add(mutation.getRow());
+						});
+					}
+				}
+			}
+
+			if (others.isEmpty()) {
+				return;
+			}
+
+			packages = others;
+		}
+
+		Object[] results = new Object[packages.size()];
+		Throwable failure = batch(tableName, packages, results);
+		invalidate(tableName, packages);
+		for (int i = 0; i < results.length; i++) {
+			if (!(results[i] instanceof Result)) {
+				retry("fast", tableName, fastQueue(tableName), packages.get(i), error(results[i], failure), null);
+			}
+		}
+	}
+
+	/**
+	 * @return the exception of the whole batch, rows without a <code>Result</code> in <code>results</code> failed
+	 */
+	private Throwable batch(TableName tableName, List<? extends ActionPackage> packages, Object[] results) {
+		List<Row> rows = new ArrayList<>(packages.size());
+		packages.forEach(aPackage -> {
+			rows.add(aPackage.action);
+			beforeWrite(tableName, aPackage.action);
+		});
+		try {
+			dispatcher.batch(tableName, rows, results);
+			return null;
+		} catch (Throwable throwable) {
+			return throwable;
+		}
+	}
+
+	private Throwable error(Object result, Throwable failure) {
+		if (result instanceof Throwable) {
+			return (Throwable) result;
+		}
+
+		return failure != null ? failure : new UnHandledException("no result");
+	}
+
+	/**
+	 * Re-enqueue a failed row after its backoff, or hand it to the dead letter handler and <code>dead</code>.
+	 * The requeued row counts against the <code>QueueLimit</code> of the queue like a new one, see
+	 * <code>WriteQueue.requeue</code>; rows still waiting for their backoff when the client closes are dead letters.
+	 */
+	private <P extends ActionPackage> void retry(String kind,
+	                                             TableName tableName,
+	                                             WriteQueue<P> queue,
+	                                             P aPackage,
+	                                             Throwable error,
+	                                             Consumer<Throwable> dead) {
+		String name = kind + "." + tableName.get().getNameAsString();
+		long backoff = closed() ? -1 : retryPolicy.backoff(aPackage, error);
+		if (backoff >= 0) {
+			aPackage.attempts++;
+			metrics.counter(name + ".retried").increment();
+			// runs once, either on the scheduler or, when the client closed first, from close()
+			Runnable pending = new Runnable() {
+				@Override
+				public void run() {
+					if (!pendingRetries.remove(this)) {
+						return;
+					}
+
+					if (closed()) {
+						deadLetter(name, tableName, aPackage, error, dead);
+						return;
+					}
+
+					try {
+						if (!queue.requeue(aPackage)) {
+							// full under OverflowPolicy.BLOCK, back off again instead of blocking the scheduler
+							retry(kind, tableName, queue, aPackage, new QueueFullException(name + " is full"), dead);
+						}
+					} catch (Throwable throwable) {
+						deadLetter(name, tableName, aPackage, throwable, dead);
+					}
+				}
+			};
+			pendingRetries.add(pending);
+			try {
+				scheduler.schedule(pending, backoff, TimeUnit.MILLISECONDS);
+				return;
+			} catch (RejectedExecutionException e) {
+				pendingRetries.remove(pending);
+			}
+		}
+
+		deadLetter(name, tableName, aPackage, error, dead);
+	}
+
+	private void deadLetter(String name,
+	                        TableName tableName,
+	                        ActionPackage aPackage,
+	                        Throwable error,
+	                        Consumer<Throwable> dead) {
+		metrics.counter(name + ".dead_letters").increment();
+		try {
+			deadLetterHandler.deadLetter(tableName, aPackage.action, error);
+		} catch (Throwable throwable) {
+			logger.error(throwable.toString());
+		}
+
+		if (dead != null) {
+			dead.accept(error);
+		}
+	}
+
+	private BufferedMutator mutator(TableName tableName) {
+		return mutators.computeIfAbsent(tableName, key -> {
+			String name = "fast." + key.get().getNameAsString();
+			BufferedMutatorParams params = new BufferedMutatorParams(key.get())
+				.writeBufferSize(writeBufferSize)
+				.listener((exception, bufferedMutator) -> {
+					metrics.counter(name + ".mutator_failures").add(exception.getNumExceptions());
+					// BufferedMutator already retried these rows itself
+					for (int i = 0; i < exception.getNumExceptions(); i++) {
+						deadLetter(name, key, new ActionPackage(exception.getRow(i)), exception.getCause(i), null);
+					}
+				});
+			try {
+				BufferedMutator mutator = connection().getBufferedMutator(params);
+				AtomicLong buffered = mutatorBytes.computeIfAbsent(key, table -> new AtomicLong(0));
+				metrics.gauge(name + ".mutator_buffered_bytes", buffered::get);
+				flusher.scheduleWithFixedDelay(() -> {
+					// rows handed over before this flush may have been cached again while buffered
+					List<byte[]> flushing = new ArrayList<>();
+					ConcurrentLinkedQueue<byte[]> unflushed = unflushedRows.get(key);
+					byte[] row;
+					while (unflushed != null && (row = unflushed.poll()) != null) {
+						flushing.add(row);
+					}
+
+					try {
+						long flushed = buffered.get();
+						mutator.flush();
+						buffered.accumulateAndGet(flushed, (current, sent) -> Math.max(0, current - sent));
+						metrics.counter(name + ".mutator_flushes").increment();
+					} catch (Throwable throwable) {
+						logger.error(throwable.toString());
+					} finally {
+						RowCache cache = rowCaches.get(key);
+						if (cache != null) {
+							flushing.forEach(cache::invalidate);
+						}
+					}
+				}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+				return mutator;
+			} catch (Throwable throwable) {
+				throw convertedException(throwable);
+			}
+		});
+	}
+
+	protected WriteQueue<ActionPackage> fastQueue(TableName tableName) {
 		if (!fastCollection.containsKey(tableName)) {
 			synchronized (fastCollection) {
 				if (!fastCollection.containsKey(tableName)) {
-					LinkedBlockingQueue<Row> fastQueue = new LinkedBlockingQueue<>();
+					WriteQueue<ActionPackage> fastQueue = new WriteQueue<>(
+						"fast." + tableName.get().getNameAsString(),
+						fastQueueLimits.getOrDefault(tableName, fastQueueLimit),
+						metrics,
+						fastPackage -> heapSize(fastPackage.action),
+						fastPackage -> fastBatch(tableName, Collections.singletonList(fastPackage)),
+						fastPackage -> logger.debug(String.format("%s drop fast row %s",
+							tableName.get().getNameAsString(), Bytes.toStringBinary(fastPackage.action.getRow())))
+					);
+					try {
+						loops.execute(() -> fastLoopTask(tableName, fastQueue, true));
+					} catch (RejectedExecutionException e) {
+						throw new QueueFullException(String.format("no loop thread left for fast.%s, see Builder.loopThreads",
+							tableName.get().getNameAsString()));
+					}
+
 					fastCollection.put(tableName, fastQueue);
-					EXECUTOR.execute(() -> fastLoopTask(tableName, fastQueue, true));
 				}
 			}
 		}
@@ -213,14 +634,14 @@ public final class HBaseClient {
 	}
 
 	private void asyncLoopTask(TableName tableName,
-	                           LinkedBlockingQueue<HAsyncTable.AsyncPackage> asyncQueue,
+	                           WriteQueue<HAsyncTable.AsyncPackage> asyncQueue,
 	                           boolean isMaster) {
 		List<HAsyncTable.AsyncPackage> packages = new ArrayList<>();
 
 		while (!closed()) {
 			try {
-				HAsyncTable.AsyncPackage aPackage = asyncQueue.poll(1, TimeUnit.SECONDS);
-				if (aPackage == null) {
+				boolean full = asyncQueue.collect(packages, asyncFlushPolicy(tableName), 1, TimeUnit.SECONDS);
+				if (packages.isEmpty()) {
 					if (!isMaster) {
 						break;
 					}
@@ -228,68 +649,83 @@ public final class HBaseClient {
 					continue;
 				}
 
-				packages.add(aPackage);
-				if (asyncQueue.drainTo(packages, asyncBatchCount()) == asyncBatchCount() && reproducible) {
-					EXECUTOR.execute(() -> asyncLoopTask(tableName, asyncQueue, false));
-				}
-
-				List<Row> rows = new ArrayList<>();
-				packages.stream()
-					.forEach(asyncPackage -> rows.add(asyncPackage.action));
-
-				Object[] results = new Object[packages.size()];
-				HAsyncTable.AsyncPackage[] packageArray = new HAsyncTable.AsyncPackage[packages.size()];
-				packages.toArray(packageArray);
-
-				HBaseTable table = null;
-				try {
-					table = table(tableName);
-					table.batch(rows, results);
-				} catch (Throwable throwable) {
-					throw convertedException(throwable);
-				} finally {
-					if (table != null) {
-						table.close();
-					}
+				if (full) {
+					spawnWorker(() -> asyncLoopTask(tableName, asyncQueue, false));
 				}
 
-				HashMap<HAsyncTable.AsyncPackage, Object> invokes = new HashMap<>();
-				for (int i = 0; i < results.length; i++) {
-					invokes.put(packageArray[i], results[i]);
+				long start = System.nanoTime();
+				asyncBatch(tableName, packages);
+				if (full) {
+					controller.sample(System.nanoTime() - start);
 				}
-
-				invokes.entrySet()
-					.parallelStream()
-					.forEach(entry -> {
-						Task task = entry.getKey().callback;
-						if (task == null) {
-							return;
-						}
-
-						if (task instanceof ResultTask) {
-							((ResultTask) task).callback(((Result) entry.getValue()));
-						}
-
-						if (task instanceof CallbackTask) {
-							((CallbackTask) task).callback();
-						}
-					});
 			} catch (Throwable throwable) {
+				logger.error(String.format("async.%s batch failed, %s", tableName.get().getNameAsString(), throwable));
+				// nobody completes the rest of the batch any more, complete() skips packages already completed
+				packages.forEach(asyncPackage -> asyncPackage.complete(null, throwable));
 			}
 
 			if (!isMaster) {
 				break;
 			}
+			packages = new ArrayList<>();
 		}
 	}
 
-	protected LinkedBlockingQueue<HAsyncTable.AsyncPackage> asyncQueue(TableName tableName) {
+	private void asyncBatch(TableName tableName, List<HAsyncTable.AsyncPackage> packages) {
+		List<GetCoalescer.Group> groups = GetCoalescer.group(packages);
+		List<ActionPackage> actions = new ArrayList<>(groups.size());
+		groups.forEach(group -> actions.add(group.action));
+		metrics.counter("async." + tableName.get().getNameAsString() + ".coalesced_gets")
+			.add(packages.size() - groups.size());
+
+		Object[] results = new Object[actions.size()];
+		Throwable failure = batch(tableName, actions, results);
+		invalidate(tableName, actions);
+		for (int i = 0; i < results.length; i++) {
+			GetCoalescer.Group group = groups.get(i);
+			Object result = results[i];
+			for (HAsyncTable.AsyncPackage asyncPackage : group.members) {
+				if (result instanceof Result) {
+					callbacks.dispatch(asyncPackage.action.getRow(), () -> asyncPackage.complete(
+						group.members.size() == 1
+							? result
+							: GetCoalescer.project((Get) asyncPackage.action, (Get) group.action.action, (Result) result),
+						null));
+					continue;
+				}
+
+				if (asyncPackage.completed()) {
+					continue;
+				}
+
+				retry("async", tableName, asyncQueue(tableName), asyncPackage, error(result, failure),
+					error -> callbacks.dispatch(asyncPackage.action.getRow(), () -> asyncPackage.complete(error, null)));
+			}
+		}
+	}
+
+	protected WriteQueue<HAsyncTable.AsyncPackage> asyncQueue(TableName tableName) {
 		if (!asyncCollection.containsKey(tableName)) {
 			synchronized (asyncCollection) {
 				if (!asyncCollection.containsKey(tableName)) {
-					LinkedBlockingQueue<HAsyncTable.AsyncPackage> asyncQueue = new LinkedBlockingQueue<>();
+					WriteQueue<HAsyncTable.AsyncPackage> asyncQueue = new WriteQueue<>(
+						"async." + tableName.get().getNameAsString(),
+						asyncQueueLimits.getOrDefault(tableName, asyncQueueLimit),
+						metrics,
+						asyncPackage -> heapSize(asyncPackage.action),
+						asyncPackage -> asyncBatch(tableName, Collections.singletonList(asyncPackage)),
+						asyncPackage -> asyncPackage.complete(null,
+							new QueueFullException(String.format("%s drop async row %s",
+								tableName.get().getNameAsString(), Bytes.toStringBinary(asyncPackage.action.getRow()))))
+					);
+					try {
+						loops.execute(() -> asyncLoopTask(tableName, asyncQueue, true));
+					} catch (RejectedExecutionException e) {
+						throw new QueueFullException(String.format("no loop thread left for async.%s, see Builder.loopThreads",
+							tableName.get().getNameAsString()));
+					}
+
 					asyncCollection.put(tableName, asyncQueue);
-					EXECUTOR.execute(() -> asyncLoopTask(tableName, asyncQueue, true));
 				}
 			}
 		}
@@ -304,7 +740,8 @@ public final class HBaseClient {
 	public HBaseTable table(TableName tableName) {
 		try {
 			return new HBaseTable(tableName,
-				connection().getTable(tableName.get()));
+				connection().getTable(tableName.get()),
+				this);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
 		}
@@ -314,6 +751,104 @@ public final class HBaseClient {
 		return connection;
 	}
 
+	/**
+	 * @return the client row cache of <code>tableName</code>, null when none is configured
+	 */
+	RowCache rowCache(TableName tableName) {
+		CachePolicy policy = cachePolicies.get(tableName);
+		if (policy == null) {
+			return null;
+		}
+
+		return rowCaches.computeIfAbsent(tableName,
+			key -> new RowCache("cache." + key.get().getNameAsString(), policy, metrics));
+	}
+
+	ExecutorService loops() {
+		return loops;
+	}
+
+	/**
+	 * @return hedged reads of <code>tableName</code>, null when not configured
+	 */
+	HedgedReader hedger(TableName tableName) {
+		return hedgers.get(tableName);
+	}
+
+	MultiGetter multiGetter() {
+		return multiGetter;
+	}
+
+	/**
+	 * @return the row Bloom filter of <code>tableName</code>, null when none is configured
+	 */
+	RowBloomFilter bloomFilter(TableName tableName) {
+		return bloomFilters.get(tableName);
+	}
+
+	private void bloomFilter(TableName tableName, BloomPolicy policy) {
+		String name = "bloom." + tableName.get().getNameAsString();
+		RowBloomFilter filter = new RowBloomFilter(name, policy, metrics);
+		bloomFilters.put(tableName, filter);
+		if (!policy.bootstrap()) {
+			filter.ready(true);
+			return;
+		}
+
+		Runnable bootstrap = () -> {
+			Scan scan = new Scan()
+				.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()))
+				.setCaching(1000)
+				.setCacheBlocks(false);
+			try (Table table = connection().getTable(tableName.get());
+			     ResultScanner scanner = table.getScanner(scan)) {
+				for (Result result : scanner) {
+					if (closed()) {
+						return;
+					}
+
+					filter.add(result.getRow());
+				}
+
+				filter.ready(true);
+				logger.debug(name + " bootstrapped");
+			} catch (Throwable throwable) {
+				logger.error(String.format("%s bootstrap failed, %s", name, throwable));
+			}
+		};
+		try {
+			loops.execute(bootstrap);
+		} catch (RejectedExecutionException e) {
+			logger.error(String.format("%s bootstrap skipped, no loop thread left", name));
+		}
+	}
+
+	/**
+	 * record the row a write through this client is about to create in the table Bloom filter
+	 */
+	void beforeWrite(TableName tableName, Row row) {
+		RowBloomFilter filter = bloomFilters.get(tableName);
+		if (filter != null && !(row instanceof Get) && !(row instanceof Delete)) {
+			filter.add(row.getRow());
+		}
+	}
+
+	/**
+	 * drop the cached row a write through this client touched
+	 */
+	void invalidate(TableName tableName, Row row) {
+		RowCache cache = rowCaches.get(tableName);
+		if (cache != null && !(row instanceof Get)) {
+			cache.invalidate(row.getRow());
+		}
+	}
+
+	private void invalidate(TableName tableName, List<? extends ActionPackage> packages) {
+		if (rowCaches.containsKey(tableName)) {
+			packages.forEach(aPackage -> invalidate(tableName, aPackage.action));
+		}
+	}
+
 	private YHBaseException convertedException(Throwable throwable) {
 		if (throwable instanceof YHBaseException) {
 			return (YHBaseException) throwable;
@@ -386,6 +921,14 @@ public final class HBaseClient {
 			return this;
 		}
 
+		/**
+		 * use <code>connection</code> instead of one created from the configuration, for tests
+		 */
+		final Builder connection(Connection connection) {
+			hBaseClient.connection = connection;
+			return this;
+		}
+
 		public final Builder set(Parameter key, String value) {
 			hBaseClient.configuration.set(key.name(), value);
 			return this;
@@ -396,6 +939,246 @@ public final class HBaseClient {
 			return this;
 		}
 
+		/**
+		 * @param limit default bound of every <code>fast()</code> queue
+		 * @return
+		 */
+		public final Builder fastQueueLimit(QueueLimit limit) {
+			hBaseClient.fastQueueLimit = limit;
+			return this;
+		}
+
+		public final Builder fastQueueLimit(TableName tableName, QueueLimit limit) {
+			hBaseClient.fastQueueLimits.put(tableName, limit);
+			return this;
+		}
+
+		/**
+		 * @param limit default bound of every <code>async()</code> queue
+		 * @return
+		 */
+		public final Builder asyncQueueLimit(QueueLimit limit) {
+			hBaseClient.asyncQueueLimit = limit;
+			return this;
+		}
+
+		public final Builder asyncQueueLimit(TableName tableName, QueueLimit limit) {
+			hBaseClient.asyncQueueLimits.put(tableName, limit);
+			return this;
+		}
+
+		/**
+		 * @param maxInFlightPerServer concurrent fast/async sub-batches sent to one region server
+		 * @return
+		 */
+		public final Builder maxInFlightPerServer(int maxInFlightPerServer) {
+			hBaseClient.maxInFlightPerServer = maxInFlightPerServer;
+			return this;
+		}
+
+		/**
+		 * @param mode default write path of every <code>fast()</code> table
+		 * @return
+		 */
+		public final Builder fastWriteMode(FastWriteMode mode) {
+			hBaseClient.fastWriteMode = mode;
+			return this;
+		}
+
+		public final Builder fastWriteMode(TableName tableName, FastWriteMode mode) {
+			hBaseClient.fastWriteModes.put(tableName, mode);
+			return this;
+		}
+
+		/**
+		 * @param merge fold Puts and Deletes of the same row inside one <code>fast()</code> batch,
+		 *              see <code>MutationMerger</code>
+		 * @return
+		 */
+		public final Builder mergeFastMutations(boolean merge) {
+			hBaseClient.mergeFastMutations = merge;
+			return this;
+		}
+
+		/**
+		 * @param writeBufferSize bytes buffered by a <code>BufferedMutator</code> before it sends
+		 * @return
+		 */
+		public final Builder writeBufferSize(long writeBufferSize) {
+			hBaseClient.writeBufferSize = writeBufferSize;
+			return this;
+		}
+
+		/**
+		 * @param flushInterval milliseconds between periodic <code>BufferedMutator</code> flushes
+		 * @return
+		 */
+		public final Builder flushInterval(long flushInterval) {
+			hBaseClient.flushInterval = flushInterval;
+			return this;
+		}
+
+		/**
+		 * @param maxBatchWorkers hard cap of extra fast/async batch worker threads,
+		 *                        the running count adapts to batch latency
+		 * @return
+		 */
+		public final Builder maxBatchWorkers(int maxBatchWorkers) {
+			hBaseClient.maxBatchWorkers = maxBatchWorkers;
+			return this;
+		}
+
+		/**
+		 * @param dispatchThreads threads sending the per region server sub-batches of fast/async writes, with a
+		 *                        queue of 16 tasks per thread; a full queue runs the sub-batch on the batch worker
+		 * @return
+		 */
+		public final Builder dispatchThreads(int dispatchThreads) {
+			hBaseClient.dispatchThreads = dispatchThreads;
+			return this;
+		}
+
+		/**
+		 * @param loopThreads cap of long running client threads, shared by the fast and async loop of every
+		 *                    table (two per table), prefetch scans, parallel scan workers and Bloom filter
+		 *                    bootstraps; a task past the cap is not queued: a new table queue fails with
+		 *                    <code>QueueFullException</code>, a prefetch scan reads synchronously and a parallel
+		 *                    scan runs with fewer workers
+		 * @return
+		 */
+		public final Builder loopThreads(int loopThreads) {
+			hBaseClient.loopThreads = loopThreads;
+			return this;
+		}
+
+		/**
+		 * @param readThreads threads running region-parallel multi-get chunks, kept apart from the write
+		 *                    dispatch threads, with a queue of 16 chunks per thread; a full queue runs the chunk
+		 *                    on the calling thread
+		 * @return
+		 */
+		public final Builder readThreads(int readThreads) {
+			hBaseClient.readThreads = readThreads;
+			return this;
+		}
+
+		/**
+		 * @param multiGetChunkSize max Gets of one region sent together by a region-parallel multi-get
+		 * @return
+		 */
+		public final Builder multiGetChunkSize(int multiGetChunkSize) {
+			hBaseClient.multiGetChunkSize = multiGetChunkSize;
+			return this;
+		}
+
+		/**
+		 * @param policy default batch cut of every <code>fast()</code> table
+		 * @return
+		 */
+		public final Builder fastFlushPolicy(FlushPolicy policy) {
+			hBaseClient.fastFlushPolicy
+				.maxRows(policy.maxRows())
+				.maxBytes(policy.maxBytes())
+				.linger(policy.linger());
+			return this;
+		}
+
+		public final Builder fastFlushPolicy(TableName tableName, FlushPolicy policy) {
+			hBaseClient.fastFlushPolicies.put(tableName, policy);
+			return this;
+		}
+
+		/**
+		 * @param policy default batch cut of every <code>async()</code> table
+		 * @return
+		 */
+		public final Builder asyncFlushPolicy(FlushPolicy policy) {
+			hBaseClient.asyncFlushPolicy
+				.maxRows(policy.maxRows())
+				.maxBytes(policy.maxBytes())
+				.linger(policy.linger());
+			return this;
+		}
+
+		public final Builder asyncFlushPolicy(TableName tableName, FlushPolicy policy) {
+			hBaseClient.asyncFlushPolicies.put(tableName, policy);
+			return this;
+		}
+
+		/**
+		 * @param executor runs <code>async()</code> callbacks and completes its futures,
+		 *                 not shut down by <code>HBaseClient.close()</code>
+		 * @return
+		 */
+		public final Builder callbackExecutor(ExecutorService executor) {
+			hBaseClient.callbackExecutor = executor;
+			hBaseClient.sharedCallbackExecutor = true;
+			return this;
+		}
+
+		/**
+		 * @param lanes deliver <code>async()</code> callbacks of the same row key in order,
+		 *              over this many serial lanes, 0 for unordered
+		 * @return
+		 */
+		public final Builder orderedCallbacks(int lanes) {
+			hBaseClient.callbackLanes = lanes;
+			return this;
+		}
+
+		/**
+		 * @param policy enable the read-through client row cache of <code>tableName</code>, invalidated by
+		 *               writes through this client including <code>fast()</code> and <code>async()</code>
+		 * @return
+		 */
+		public final Builder rowCache(TableName tableName, CachePolicy policy) {
+			hBaseClient.cachePolicies.put(tableName, policy);
+			return this;
+		}
+
+		/**
+		 * @param policy keep a Bloom filter of the rows of <code>tableName</code> so <code>HBaseTable</code>
+		 *               exists and get answer rows that were never written without a round trip
+		 *               ; only writes through this client and the bootstrap scan are seen by the filter
+		 * @return
+		 */
+		public final Builder bloomFilter(TableName tableName, BloomPolicy policy) {
+			hBaseClient.bloomPolicies.put(tableName, policy);
+			return this;
+		}
+
+		/**
+		 * @param policy send <code>HBaseTable</code> and <code>HAsyncTable</code> Gets of <code>tableName</code>
+		 *               with timeline consistency when the table has region replicas, so the HBase client asks
+		 *               the replicas too after <code>HedgePolicy.delay()</code> without an answer from the
+		 *               primary; the first answer wins and replica answers are flagged stale. The delay sets
+		 *               <code>hbase.client.primaryCallTimeout.get</code> and <code>.multiget</code> of the
+		 *               connection unless they are configured, the smallest delay of all tables is used
+		 * @return
+		 */
+		public final Builder hedgedReads(TableName tableName, HedgePolicy policy) {
+			hBaseClient.hedgePolicies.put(tableName, policy);
+			return this;
+		}
+
+		/**
+		 * @param retryPolicy retry of rows failed inside a fast/async batch
+		 * @return
+		 */
+		public final Builder retryPolicy(RetryPolicy retryPolicy) {
+			hBaseClient.retryPolicy = retryPolicy;
+			return this;
+		}
+
+		/**
+		 * @param deadLetterHandler receives fast/async rows that failed permanently, logs them by default
+		 * @return
+		 */
+		public final Builder deadLetterHandler(DeadLetterHandler deadLetterHandler) {
+			hBaseClient.deadLetterHandler = deadLetterHandler;
+			return this;
+		}
+
 		public final HBaseClient build() {
 			hBaseClient.init();
 			return hBaseClient;
@@ -0,0 +1,39 @@
+package org.yetiz.utils.hbase;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters and gauges of a <code>HBaseClient</code>.
+ */
+public class HBaseMetrics {
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	public LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, key -> new LongAdder());
+	}
+
+	public void gauge(String name, LongSupplier supplier) {
+		gauges.put(name, supplier);
+	}
+
+	public long value(String name) {
+		LongAdder counter = counters.get(name);
+		if (counter != null) {
+			return counter.sum();
+		}
+
+		LongSupplier gauge = gauges.get(name);
+		return gauge == null ? 0 : gauge.getAsLong();
+	}
+
+	public HashMap<String, Long> snapshot() {
+		HashMap<String, Long> rtn = new HashMap<>();
+		counters.forEach((name, counter) -> rtn.put(name, counter.sum()));
+		gauges.forEach((name, gauge) -> rtn.put(name, gauge.getAsLong()));
+		return rtn;
+	}
+}
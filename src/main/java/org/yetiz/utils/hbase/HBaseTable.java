@@ -1,5 +1,6 @@
 package org.yetiz.utils.hbase;
 
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.yetiz.utils.hbase.exception.UnHandledException;
@@ -7,24 +8,44 @@ import org.yetiz.utils.hbase.exception.YHBaseException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Created by yeti on 16/4/5.
  */
 public class HBaseTable {
+	private static final int DEFAULT_PREFETCH_BATCH = 100;
 	private final Table table;
 	private final TableName tableName;
+	private final HBaseClient client;
+	private final RowCache cache;
+	private final RowBloomFilter bloom;
+	private final HedgedReader hedger;
 	private final Model model;
 	private boolean closed = false;
 
 	protected HBaseTable(TableName tableName,
 	                     Table table) {
+		this(tableName, table, null);
+	}
+
+	HBaseTable(TableName tableName,
+	           Table table,
+	           HBaseClient client) {
 		this.tableName = tableName;
 		this.table = table;
-		this.model = new Model(table, tableName);
+		this.client = client;
+		this.cache = client == null ? null : client.rowCache(tableName);
+		this.bloom = client == null ? null : client.bloomFilter(tableName);
+		this.hedger = client == null ? null : client.hedger(tableName);
+		this.model = new Model(this);
 	}
 
 	public <R extends HTableModel> Model<R> model() {
@@ -57,27 +78,120 @@ public class HBaseTable {
 		return closed;
 	}
 
+	/**
+	 * answered without a round trip when the table Bloom filter knows the row was never written
+	 */
 	public boolean exists(Get get) {
+		if (absent(get)) {
+			return false;
+		}
+
 		try {
-			return table().exists(get);
+			return verified(get, table().exists(get));
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
 		}
 	}
 
+	/**
+	 * rows the table Bloom filter knows were never written are answered without a round trip
+	 */
 	public boolean[] exists(List<Get> gets) {
+		boolean[] rtn = new boolean[gets.size()];
+		List<Get> remains = new ArrayList<>(gets.size());
+		List<Integer> indexes = new ArrayList<>(gets.size());
+		for (int i = 0; i < gets.size(); i++) {
+			if (!absent(gets.get(i))) {
+				remains.add(gets.get(i));
+				indexes.add(i);
+			}
+		}
+
+		if (remains.isEmpty()) {
+			return rtn;
+		}
+
 		try {
-			return table().existsAll(gets);
+			boolean[] exists = table().existsAll(remains);
+			for (int i = 0; i < exists.length; i++) {
+				rtn[indexes.get(i)] = verified(remains.get(i), exists[i]);
+			}
+
+			return rtn;
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
 		}
 	}
 
+	/**
+	 * @return true when the table Bloom filter proves the row of <code>get</code> was never written
+	 */
+	private boolean absent(Get get) {
+		return bloom != null && !get.isClosestRowBefore() && !bloom.mightContain(get.getRow());
+	}
+
+	/**
+	 * record the server answer for a Get the table Bloom filter let through, to measure its false positive rate;
+	 * only a whole-row Get tells whether the row exists
+	 */
+	private boolean verified(Get get, boolean exists) {
+		if (bloom != null && bloom.ready() && wholeRow(get)) {
+			bloom.verified(exists);
+		}
+
+		return exists;
+	}
+
+	private Result verified(Get get, Result result) {
+		if (bloom != null && result != null && !result.isStale()) {
+			verified(get, get.isCheckExistenceOnly() ? Boolean.TRUE.equals(result.getExists()) : !result.isEmpty());
+		}
+
+		return result;
+	}
+
+	private static boolean wholeRow(Get get) {
+		return !get.hasFamilies()
+			&& get.getFilter() == null
+			&& get.getTimeRange().isAllTime();
+	}
+
+	private Result absentResult(Get get) {
+		return get.isCheckExistenceOnly() ? Result.create(null, false) : Result.create(new Cell[0]);
+	}
+
 	public Result append(Append append) {
+		record(append);
 		try {
 			return table().append(append);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(append);
+		}
+	}
+
+	private void record(Row row) {
+		if (client != null) {
+			client.beforeWrite(tableName, row);
+		}
+	}
+
+	private void record(List<? extends Row> rows) {
+		if (client != null) {
+			rows.forEach(row -> client.beforeWrite(tableName, row));
+		}
+	}
+
+	private void invalidate(Row row) {
+		if (client != null) {
+			client.invalidate(tableName, row);
+		}
+	}
+
+	private void invalidate(List<? extends Row> rows) {
+		if (client != null) {
+			rows.forEach(row -> client.invalidate(tableName, row));
 		}
 	}
 
@@ -86,42 +200,199 @@ public class HBaseTable {
 	}
 
 	public Result increment(Increment increment) {
+		record(increment);
 		try {
 			return table().increment(increment);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(increment);
 		}
 	}
 
+	/**
+	 * served from the client row cache when one is configured for this table, and without a round trip
+	 * when the table Bloom filter knows the row was never written; hedged to the region replicas when
+	 * hedged reads are configured and the table has replicas, a replica answer carries <code>Result.isStale()</code>
+	 */
 	public Result get(Get get) {
+		if (absent(get)) {
+			return absentResult(get);
+		}
+
+		if (cache != null) {
+			return cache.get(get, this::load);
+		}
+
+		return load(get);
+	}
+
+	private Result load(Get get) {
+		if (hedger != null) {
+			try {
+				return verified(get, hedger.observe(table().get(hedger.hedged(get))));
+			} catch (Throwable throwable) {
+				throw convertedException(throwable);
+			}
+		}
+
 		try {
-			return table().get(get);
+			return verified(get, table().get(get));
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
 		}
 	}
 
+	/**
+	 * served from the client row cache when one is configured for this table, and without a round trip
+	 * for rows the table Bloom filter knows were never written
+	 */
 	public Result[] get(List<Get> gets) {
+		if (bloom == null) {
+			return lookup(gets);
+		}
+
+		Result[] rtn = new Result[gets.size()];
+		List<Get> remains = new ArrayList<>(gets.size());
+		List<Integer> indexes = new ArrayList<>(gets.size());
+		for (int i = 0; i < gets.size(); i++) {
+			if (absent(gets.get(i))) {
+				rtn[i] = absentResult(gets.get(i));
+			} else {
+				remains.add(gets.get(i));
+				indexes.add(i);
+			}
+		}
+
+		if (remains.isEmpty()) {
+			return rtn;
+		}
+
+		Result[] results = lookup(remains);
+		for (int i = 0; i < results.length; i++) {
+			rtn[indexes.get(i)] = results[i];
+		}
+
+		return rtn;
+	}
+
+	private Result[] lookup(List<Get> gets) {
+		if (cache != null) {
+			return cache.get(gets, this::load);
+		}
+
+		return load(gets);
+	}
+
+	private Result[] load(List<Get> gets) {
 		try {
-			return table().get(gets);
+			Result[] results = table().get(gets);
+			for (int i = 0; i < results.length; i++) {
+				verified(gets.get(i), results[i]);
+			}
+
+			return results;
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
 		}
 	}
 
+	/**
+	 * Region-parallel multi-get, see <code>get(List, long, TimeUnit, BiConsumer)</code>.
+	 *
+	 * @return results in request order plus the errors of Gets that failed or timed out
+	 */
+	public MultiGetResult<Result> get(List<Get> gets, long timeout, TimeUnit unit) {
+		return get(gets, result -> result, timeout, unit, null);
+	}
+
+	/**
+	 * Region-parallel multi-get. The Gets are split by region and fetched concurrently, every chunk
+	 * completes on its own within <code>timeout</code>; results are handed to <code>consumer</code>
+	 * on the calling thread as their chunk completes and are not retained. Not served from the row cache.
+	 *
+	 * @return errors of Gets that failed or timed out
+	 */
+	public MultiGetResult<Result> get(List<Get> gets, long timeout, TimeUnit unit, BiConsumer<Get, Result> consumer) {
+		return get(gets, result -> result, timeout, unit, consumer);
+	}
+
+	<T> MultiGetResult<T> get(List<Get> gets,
+	                          Function<Result, T> converter,
+	                          long timeout,
+	                          TimeUnit unit,
+	                          BiConsumer<Get, T> consumer) {
+		MultiGetResult<T> rtn = new MultiGetResult<>(gets, consumer == null);
+		List<Integer> indexes = new ArrayList<>(gets.size());
+		for (int i = 0; i < gets.size(); i++) {
+			if (!absent(gets.get(i))) {
+				indexes.add(i);
+				continue;
+			}
+
+			T value = converter.apply(absentResult(gets.get(i)));
+			rtn.succeed(i, value);
+			if (consumer != null) {
+				consumer.accept(gets.get(i), value);
+			}
+		}
+
+		if (indexes.isEmpty()) {
+			return rtn;
+		}
+
+		if (client != null) {
+			client.multiGetter().get(tableName, gets, indexes, converter, timeout, unit, consumer, rtn,
+				bloom == null ? null : this::verified);
+			return rtn;
+		}
+
+		List<Get> remains = new ArrayList<>(indexes.size());
+		indexes.forEach(index -> remains.add(gets.get(index)));
+		Object[] results = new Object[remains.size()];
+		Throwable failure = null;
+		try {
+			table().batch(remains, results);
+		} catch (Throwable throwable) {
+			failure = throwable;
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			int index = indexes.get(i);
+			if (!(results[i] instanceof Result)) {
+				rtn.fail(index, convertedException(results[i] instanceof Throwable ? (Throwable) results[i] : failure));
+				continue;
+			}
+
+			T value = converter.apply(verified(gets.get(index), (Result) results[i]));
+			rtn.succeed(index, value);
+			if (consumer != null) {
+				consumer.accept(gets.get(index), value);
+			}
+		}
+
+		return rtn;
+	}
+
 	public void put(Put put) {
+		record(put);
 		try {
 			table().put(put);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(put);
 		}
 	}
 
 	public void put(List<Put> puts) {
+		record(puts);
 		try {
 			table().put(puts);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(puts);
 		}
 	}
 
@@ -130,6 +401,8 @@ public class HBaseTable {
 			table().delete(delete);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(delete);
 		}
 	}
 
@@ -138,6 +411,8 @@ public class HBaseTable {
 			table().delete(deletes);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(deletes);
 		}
 	}
 
@@ -149,31 +424,135 @@ public class HBaseTable {
 		}
 	}
 
+	/**
+	 * Scanner that reads ahead in the background, so row processing overlaps the scanner RPCs.
+	 *
+	 * @param prefetch batches of <code>Scan.getCaching()</code> rows kept fetched ahead, 0 to read synchronously
+	 */
+	public ResultScanner scan(Scan scan, int prefetch) {
+		ResultScanner scanner = scan(scan);
+		if (prefetch <= 0) {
+			return scanner;
+		}
+
+		try {
+			return new PrefetchScanner(client, scanner,
+				scan.getCaching() > 0 ? scan.getCaching() : DEFAULT_PREFETCH_BATCH, prefetch, background("prefetch-scan"),
+				client != null ? client.metrics().counter("scan.prefetch.waits") : null);
+		} catch (RejectedExecutionException e) {
+			// no loop thread left, read synchronously
+			client.metrics().counter("scan.prefetch.rejected").increment();
+			return scanner;
+		}
+	}
+
+	/**
+	 * @return the client loop pool, bounded by <code>Builder.loopThreads</code>, or a new daemon thread per task
+	 * for tables opened without a client
+	 */
+	private Executor background(String name) {
+		if (client != null) {
+			return client.loops();
+		}
+
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + tableName.get().getNameAsString());
+			thread.setDaemon(true);
+			thread.start();
+		};
+	}
+
+	/**
+	 * Lazy stream of <code>scan</code>; the scanner is closed once a terminal operation returns,
+	 * short-circuiting ones included, or when the stream is closed.
+	 */
+	public Stream<Result> stream(Scan scan) {
+		return stream(scan, 0);
+	}
+
+	/**
+	 * @param prefetch batches read ahead in the background, see <code>scan(Scan, int)</code>
+	 */
+	public Stream<Result> stream(Scan scan, int prefetch) {
+		return ScannerSpliterator.stream(scan(scan, prefetch), result -> result);
+	}
+
+	/**
+	 * Unordered <code>parallelScan(Scan, int, boolean)</code>.
+	 */
+	public Stream<Result> parallelScan(Scan scan, int parallelism) {
+		return parallelScan(scan, parallelism, false);
+	}
+
+	/**
+	 * Split <code>scan</code> at region boundaries and run up to <code>parallelism</code> sub-scans
+	 * concurrently. Close the stream when it is not read to the end.
+	 *
+	 * @param ordered rows in key order, later regions are read ahead; otherwise rows as they arrive
+	 */
+	public Stream<Result> parallelScan(Scan scan, int parallelism, boolean ordered) {
+		return parallelScan(scan, parallelism, ordered, result -> result);
+	}
+
+	<T> Stream<T> parallelScan(Scan scan, int parallelism, boolean ordered, Function<Result, T> converter) {
+		return new ParallelScanner<>(client, tableName, table(), scan, parallelism, ordered, converter,
+			background("parallel-scan")).stream();
+	}
+
 	public void batch(List<? extends Row> actions, Object[] results) {
+		record(actions);
 		try {
 			table().batch(actions, results);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(actions);
 		}
 	}
 
 	public <R> void batchCallback(List<? extends Row> actions,
 	                              Object[] results,
 	                              Batch.Callback<R> callback) {
+		record(actions);
 		try {
 			table().batchCallback(actions, results, callback);
 		} catch (Throwable throwable) {
 			throw convertedException(throwable);
+		} finally {
+			invalidate(actions);
 		}
 	}
 
+	/**
+	 * Model reads only fetch the columns the model declares, or the columns of the accessors given to
+	 * <code>select</code>; a Get or Scan that already asks for families or columns is kept as it is.
+	 */
 	public static class Model<R extends HTableModel> {
-		private Table table;
+		private HBaseTable table;
 		private TableName tableName;
+		private String[] accessors;
 
 		public Model(Table table, TableName tableName) {
+			this(new HBaseTable(tableName, table));
+		}
+
+		Model(HBaseTable table) {
+			this(table, new String[0]);
+		}
+
+		private Model(HBaseTable table, String[] accessors) {
 			this.table = table;
-			this.tableName = tableName;
+			this.tableName = table.tableName();
+			this.accessors = accessors;
+		}
+
+		/**
+		 * @param accessors accessor method names of the model
+		 * @return a view of this model table whose reads only fetch the columns of <code>accessors</code>
+		 */
+		public Model<R> select(String... accessors) {
+			HTableModel.columns(tableName, accessors);
+			return new Model<>(table, accessors);
 		}
 
 		public void close() throws IOException {
@@ -181,63 +560,101 @@ public class HBaseTable {
 		}
 
 		public R append(Append append) {
-			try {
-				return convert(table.append(append));
-			} catch (Throwable throwable) {
-				throw convertedException(throwable);
-			}
-		}
-
-		private YHBaseException convertedException(Throwable throwable) {
-			if (throwable instanceof YHBaseException) {
-				return (YHBaseException) throwable;
-			} else {
-				return new UnHandledException(throwable);
-			}
+			return convert(table.append(append));
 		}
 
 		private R convert(Result result) {
 			return HTableModel.newWrappedModel(tableName, result);
 		}
 
+		private Get project(Get get) {
+			return HTableModel.project(tableName, get, accessors);
+		}
+
+		private List<Get> project(List<Get> gets) {
+			List<Get> rtn = new ArrayList<>(gets.size());
+			gets.forEach(get -> rtn.add(project(get)));
+			return rtn;
+		}
+
+		private Scan project(Scan scan) {
+			return HTableModel.project(tableName, scan, accessors);
+		}
+
 		public R increment(Increment increment) {
-			try {
-				return convert(table.increment(increment));
-			} catch (Throwable throwable) {
-				throw convertedException(throwable);
-			}
+			return convert(table.increment(increment));
 		}
 
 		public R get(Get get) {
-			try {
-				return convert(table.get(get));
-			} catch (Throwable throwable) {
-				throw convertedException(throwable);
-			}
+			return convert(table.get(project(get)));
 		}
 
-		public List<R> get(List<Get> gets) {
-			try {
-				return Arrays.asList(table.get(gets))
-					.stream()
-					.collect(ArrayList::new,
-						(list, get) -> list.add(convert(get)),
-						(list1, list2) -> list1.addAll(list2));
+		/**
+		 * @return an empty model when the row does not match <code>filter</code>
+		 */
+		public R get(Get get, ModelFilter filter) {
+			return convert(table.get(filter.applyTo(project(get))));
+		}
 
-			} catch (Throwable throwable) {
-				throw convertedException(throwable);
+		public List<R> get(List<Get> gets) {
+			Result[] results = table.get(project(gets));
+			List<R> rtn = new ArrayList<>(results.length);
+			for (Result result : results) {
+				rtn.add(convert(result));
 			}
+
+			return rtn;
+		}
+
+		/**
+		 * Region-parallel multi-get, see <code>HBaseTable.get(List, long, TimeUnit, BiConsumer)</code>.
+		 */
+		public MultiGetResult<R> get(List<Get> gets, long timeout, TimeUnit unit) {
+			return table.get(project(gets), this::convert, timeout, unit, null);
+		}
+
+		/**
+		 * Region-parallel multi-get, models are converted by the chunk workers and streamed to
+		 * <code>consumer</code> as their chunk completes.
+		 */
+		public MultiGetResult<R> get(List<Get> gets, long timeout, TimeUnit unit, BiConsumer<Get, R> consumer) {
+			return table.get(project(gets), this::convert, timeout, unit, consumer);
+		}
+
+		/**
+		 * Unordered parallel scan, see <code>HBaseTable.parallelScan(Scan, int, boolean)</code>.
+		 */
+		public Stream<R> parallelScan(Scan scan, int parallelism) {
+			return parallelScan(scan, parallelism, false);
+		}
+
+		/**
+		 * Parallel scan, models are converted by the sub-scan workers,
+		 * see <code>HBaseTable.parallelScan(Scan, int, boolean)</code>.
+		 */
+		public Stream<R> parallelScan(Scan scan, int parallelism, boolean ordered) {
+			return table.parallelScan(project(scan), parallelism, ordered, this::convert);
 		}
 
 		public ReturnScanner<R> scan(Scan scan) {
-			try {
-				return new ReturnScanner<>(table.getScanner(scan), tableName);
-			} catch (Throwable throwable) {
-				throw convertedException(throwable);
-			}
+			return new ReturnScanner<>(table.scan(project(scan)), tableName);
+		}
+
+		/**
+		 * @return rows matching <code>filter</code>, evaluated on the region servers
+		 */
+		public ReturnScanner<R> scan(Scan scan, ModelFilter filter) {
+			return new ReturnScanner<>(table.scan(filter.applyTo(project(scan))), tableName);
+		}
+
+		/**
+		 * @param prefetch batches read ahead in the background, see <code>HBaseTable.scan(Scan, int)</code>
+		 */
+		public ReturnScanner<R> scan(Scan scan, int prefetch) {
+			return new ReturnScanner<>(table.scan(project(scan), prefetch), tableName);
 		}
 
-		public static class ReturnScanner<R extends HTableModel> {
+		public static class ReturnScanner<R extends HTableModel> implements AutoCloseable {
 			private ResultScanner scanner;
 			private TableName tableName;
 
@@ -260,11 +677,21 @@ public class HBaseTable {
 			}
 
 			public List<R> next(int nbRows) throws IOException {
-				return Arrays.asList(scanner.next(nbRows))
-					.stream()
-					.collect(ArrayList::new,
-						(list, get) -> list.add(convert(get)),
-						(list1, list2) -> list1.addAll(list2));
+				Result[] results = scanner.next(nbRows);
+				List<R> rtn = new ArrayList<>(results.length);
+				for (Result result : results) {
+					rtn.add(convert(result));
+				}
+
+				return rtn;
+			}
+
+			/**
+			 * Lazy stream of the remaining rows, each converted only when consumed; the scanner is closed
+			 * once a terminal operation returns, short-circuiting ones included, or when the stream is closed.
+			 */
+			public Stream<R> stream() {
+				return ScannerSpliterator.stream(scanner, this::convert);
 			}
 
 			public void close() {
@@ -3,23 +3,25 @@ package org.yetiz.utils.hbase;
 import org.apache.hadoop.hbase.client.Row;
 
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Created by yeti on 16/4/14.
  */
 public class HFastTable {
-	private LinkedBlockingQueue<Row> fastQueue;
+	private WriteQueue<ActionPackage> fastQueue;
 
-	public HFastTable(LinkedBlockingQueue<Row> fastQueue) {
+	public HFastTable(WriteQueue<ActionPackage> fastQueue) {
 		this.fastQueue = fastQueue;
 	}
 
+	/**
+	 * @throws org.yetiz.utils.hbase.exception.QueueFullException when the queue rejects the action
+	 */
 	public void go(Row action) {
-		fastQueue.offer(action);
+		fastQueue.offer(new ActionPackage(action));
 	}
 
 	public void go(List<Row> actions) {
-		fastQueue.addAll(actions);
+		actions.forEach(this::go);
 	}
 }
@@ -5,23 +5,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.collections.map.UnmodifiableMap;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yetiz.utils.hbase.exception.InvalidOperationException;
 import org.yetiz.utils.hbase.exception.TypeNotFoundException;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+import org.yetiz.utils.hbase.processor.ModelRegistryProcessor;
 import org.yetiz.utils.hbase.utils.ModelCallbackTask;
 
 import javax.xml.bind.DatatypeConverter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Stream;
@@ -39,12 +48,19 @@ public abstract class HTableModel<T extends HTableModel> {
 		ModelTableNameMaps = new HashMap<>();
 	private static final HashMap<TableName, Class<? extends HTableModel>>
 		TableNameModelMaps = new HashMap<>();
-	private static final HashMap<TableName, HashMap<String, String>>
-		ModelFQFields = new HashMap<>();
-	private static final Reflections REFLECTION = new Reflections("");
-	private static final ValueSetterPackage DEFAULT_VALUE_SETTER_PACKAGE = new ValueSetterPackage("", "", null);
+	private static final HashMap<TableName, ModelColumns>
+		ModelColumnTables = new HashMap<>();
+	private static final HashMap<Class<? extends HTableModel>, Class<? extends HTableModel>>
+		ModelAccessorTypes = new HashMap<>();
+	/**
+	 * comma separated packages scanned for models on top of the <code>ModelRegistryProcessor</code> registries,
+	 * nothing is scanned when unset
+	 */
+	public static final String MODEL_PACKAGES_PROPERTY = "hbase.utils.model.packages";
+	private static final List<Class<? extends HTableModel>> MODELS = new ArrayList<>();
 	private static Field resultField;
 	private static Field isResultField;
+	private static final String ROW_UPDATED_TIME = "row_updated_time";
 	private static Logger LOGGER = LoggerFactory.getLogger(HTableModel.class);
 
 	static {
@@ -56,14 +72,15 @@ public abstract class HTableModel<T extends HTableModel> {
 		}
 	}
 
-	private final HashMap<String, ValueSetterPackage> setValues;
 	private boolean isResult;
 	private Result result = null;
-	private boolean copy = false;
+	private int slot = -1;
+	private ModelColumns columns;
+	private byte[][] values;
+	private boolean[] assigned;
 
 	public HTableModel() {
 		isResult = false;
-		setValues = new HashMap<>();
 	}
 
 	/**
@@ -94,9 +111,26 @@ public abstract class HTableModel<T extends HTableModel> {
 		return TableNameModelMaps.get(tableName);
 	}
 
+	/**
+	 * Models should be created here rather than with <code>new</code>: the instance is of the generated
+	 * <code>&lt;type&gt;$$Accessors</code> subclass, whose accessors hand their column to the model, so
+	 * <code>getClass()</code> is not <code>type</code>, compare with <code>instanceof</code> or
+	 * <code>modelType(model.tableName())</code> instead. Models created with <code>new</code>, and final
+	 * models, find the column of an accessor on the stack.
+	 *
+	 * @return a new model of <code>type</code>
+	 */
+	public static final <R extends HTableModel> R newModel(Class<R> type) {
+		try {
+			return (R) ModelAccessorTypes.getOrDefault(type, type).newInstance();
+		} catch (Throwable throwable) {
+			throw new TypeNotFoundException(throwable);
+		}
+	}
+
 	public static final <R extends HTableModel> R newWrappedModel(TableName tableName, Result result) {
 		try {
-			R r = (R) TableNameModelMaps.get(tableName).newInstance();
+			R r = (R) newModel(TableNameModelMaps.get(tableName));
 			resultField.set(r, result);
 			isResultField.set(r, true);
 			return r;
@@ -117,10 +151,71 @@ public abstract class HTableModel<T extends HTableModel> {
 	}
 
 	private static final Stream<Class<? extends HTableModel>> implementedModels() {
-		return REFLECTION
+		synchronized (MODELS) {
+			if (MODELS.isEmpty()) {
+				MODELS.addAll(registeredModels());
+				MODELS.addAll(scannedModels());
+			}
+
+			return new ArrayList<>(MODELS).stream();
+		}
+	}
+
+	/**
+	 * @return models listed by the <code>ModelRegistryProcessor</code> registries on the classpath
+	 */
+	private static final Set<Class<? extends HTableModel>> registeredModels() {
+		LinkedHashSet<Class<? extends HTableModel>> rtn = new LinkedHashSet<>();
+		ClassLoader loader = HTableModel.class.getClassLoader();
+		try {
+			Enumeration<URL> registries = loader.getResources(ModelRegistryProcessor.REGISTRY);
+			while (registries.hasMoreElements()) {
+				try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(registries.nextElement().openStream(), HBaseClient.DEFAULT_CHARSET))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						line = line.trim();
+						if (line.isEmpty()) {
+							continue;
+						}
+
+						try {
+							Class<?> type = Class.forName(line, false, loader);
+							if (HTableModel.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+								rtn.add((Class<? extends HTableModel>) type);
+							}
+						} catch (Throwable throwable) {
+							LOGGER.warn(String.format("registered model %s not found", line));
+						}
+					}
+				}
+			}
+		} catch (Throwable throwable) {
+			LOGGER.warn("read model registry failed, " + throwable);
+		}
+
+		return rtn;
+	}
+
+	/**
+	 * @return models found by scanning <code>MODEL_PACKAGES_PROPERTY</code>, none when it is unset
+	 */
+	private static final Set<Class<? extends HTableModel>> scannedModels() {
+		String packages = System.getProperty(MODEL_PACKAGES_PROPERTY, "");
+		Object[] prefixes = Arrays.stream(packages.split(","))
+			.map(String::trim)
+			.filter(prefix -> !prefix.isEmpty())
+			.toArray();
+		if (prefixes.length == 0) {
+			return new LinkedHashSet<>();
+		}
+
+		LOGGER.info(String.format("scanning %s for models", packages));
+		return new Reflections(prefixes)
 			.getSubTypesOf(HTableModel.class)
 			.stream()
-			.filter(type -> !Modifier.isAbstract(type.getModifiers()));
+			.filter(type -> !Modifier.isAbstract(type.getModifiers()))
+			.collect(LinkedHashSet::new, Set::add, Set::addAll);
 	}
 
 	public void drop(HBaseClient client) {
@@ -152,7 +247,7 @@ public abstract class HTableModel<T extends HTableModel> {
 		LOGGER.info(String.format("%s migrating...", tableName().get().getNameAsString()));
 
 		ObjectNode root = JSON_MAPPER.createObjectNode();
-		root.put("object_name", this.getClass().getName());
+		root.put("object_name", modelType(tableName()).getName());
 		HTableDescriptor descriptor = client.admin().tableDescriptor(tableName());
 
 		ArrayNode families = JSON_MAPPER.createArrayNode();
@@ -218,21 +313,6 @@ public abstract class HTableModel<T extends HTableModel> {
 				try {
 					TableName tableName = type.newInstance().tableName();
 					List<Method> methods = methods(type, null);
-					ModelFQFields.put(tableName,
-						methods
-							.stream()
-							.collect(HashMap<String, String>::new,
-								(map, method) -> {
-									if (method.getAnnotation(Family.class) != null &&
-										method.getAnnotation(Qualifier.class) != null) {
-										map.put(method.getAnnotation(Family.class).family() +
-												"+-" +
-												method.getAnnotation(Qualifier.class).qualifier(),
-											method.getName());
-									}
-								},
-								(map1, map2) -> map1.putAll(map2)));
-
 					ModelQualifiers.put(tableName,
 						methods
 							.stream()
@@ -254,9 +334,23 @@ public abstract class HTableModel<T extends HTableModel> {
 									}
 								},
 								(map1, map2) -> map1.putAll(map2)));
+					ModelColumnTables.put(tableName,
+						new ModelColumns(ModelFamilies.get(tableName), ModelQualifiers.get(tableName)));
 				} catch (Throwable throwable) {
 				}
 			});
+		implementedModels()
+			.forEach(type -> {
+				TableName tableName = ModelTableNameMaps.get(type);
+				if (ModelColumnTables.containsKey(tableName)) {
+					Class<? extends HTableModel> generated =
+						ModelAccessors.generate(type, ModelColumnTables.get(tableName));
+					if (generated != null) {
+						ModelAccessorTypes.put(type, generated);
+						ModelTableNameMaps.put(generated, tableName);
+					}
+				}
+			});
 	}
 
 	private static final List<Field> fields(Class type, List<Field> fields) {
@@ -297,6 +391,73 @@ public abstract class HTableModel<T extends HTableModel> {
 		return delete;
 	}
 
+	/**
+	 * Restrict <code>get</code> to the columns of <code>accessors</code>, or to every column the model declares
+	 * without accessors. A <code>get</code> that already asks for families or columns is kept as it is, adding
+	 * columns to a family it asks for whole would narrow it.
+	 *
+	 * @param accessors accessor method names of the model
+	 * @return <code>get</code> itself when nothing changes, a projected copy otherwise
+	 */
+	public static final Get project(TableName tableName, Get get, String... accessors) {
+		if (get.hasFamilies()) {
+			return get;
+		}
+
+		Get rtn = new Get(get);
+		columns(tableName, accessors).forEach(column -> rtn.addColumn(column[0], column[1]));
+		return rtn;
+	}
+
+	/**
+	 * Restrict <code>scan</code> to the columns of <code>accessors</code>, see
+	 * <code>project(TableName, Get, String...)</code>.
+	 */
+	public static final Scan project(TableName tableName, Scan scan, String... accessors) {
+		if (scan.hasFamilies()) {
+			return scan;
+		}
+
+		try {
+			Scan rtn = new Scan(scan);
+			columns(tableName, accessors).forEach(column -> rtn.addColumn(column[0], column[1]));
+			return rtn;
+		} catch (IOException e) {
+			throw new UnHandledException(e);
+		}
+	}
+
+	/**
+	 * @return family and qualifier of every accessor, of every declared column when none are given
+	 */
+	static List<byte[][]> columns(TableName tableName, String... accessors) {
+		ModelColumns columns = ModelColumnTables.get(tableName);
+		if (columns == null) {
+			throw new TypeNotFoundException(String.format("%s is not a model table", tableName.get().getNameAsString()));
+		}
+
+		List<byte[][]> rtn = new ArrayList<>(accessors.length == 0 ? columns.size() : accessors.length);
+		if (accessors.length == 0) {
+			for (int slot = 0; slot < columns.size(); slot++) {
+				rtn.add(new byte[][]{columns.family(slot), columns.qualifier(slot)});
+			}
+
+			return rtn;
+		}
+
+		for (String name : accessors) {
+			int slot = columns.slot(name);
+			if (slot < 0) {
+				throw new InvalidOperationException(String.format("%s has no column accessor %s",
+					tableName.get().getNameAsString(), name));
+			}
+
+			rtn.add(new byte[][]{columns.family(slot), columns.qualifier(slot)});
+		}
+
+		return rtn;
+	}
+
 	public static final byte[] byteValueFromHex(String hex) {
 		return DatatypeConverter.parseHexBinary(hex);
 	}
@@ -317,15 +478,37 @@ public abstract class HTableModel<T extends HTableModel> {
 		return (T) this;
 	}
 
+	/**
+	 * Columns set on this model are written with their new values; for a fetched model every other column
+	 * it declares is written back from the fetched <code>Result</code>, copied straight from the cell
+	 * backing arrays into the Put.
+	 */
 	public Put put(byte[] row) {
 		Put put = new Put(row);
-		if (!setValues.containsKey("row_updated_time")) {
+		if (!assigned(ROW_UPDATED_TIME)) {
 			row_updated_time(System.currentTimeMillis());
 		}
 
-		setValues.values()
-			.stream()
-			.forEach(pack -> put.addColumn(byteValue(pack.family), byteValue(pack.qualifier), pack.value));
+		ModelColumns columns = columns();
+		for (int slot = 0; slot < columns.size(); slot++) {
+			if (assigned[slot]) {
+				put.addColumn(columns.family(slot), columns.qualifier(slot), values[slot]);
+			}
+		}
+
+		Cell[] cells = isResult && result != null ? result.rawCells() : null;
+		if (cells != null) {
+			boolean[] written = assigned.clone();
+			for (Cell cell : cells) {
+				int slot = columns.slot(cell);
+				if (slot >= 0 && !written[slot]) {
+					written[slot] = true;
+					put.addColumn(columns.family(slot), ByteBuffer.wrap(columns.qualifier(slot)), put.getTimeStamp(),
+						ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+				}
+			}
+		}
+
 		return put;
 	}
 
@@ -336,48 +519,110 @@ public abstract class HTableModel<T extends HTableModel> {
 	}
 
 	protected final T setValue(long longValue) {
-		copyResultToSetter();
+		assign(slot(), byteValue(longValue));
+		return (T) this;
+	}
 
-		String methodName = Thread.currentThread().getStackTrace()[2].getMethodName();
-		this.setValues.put(methodName,
-			new ValueSetterPackage(family(methodName), qualifier(methodName), byteValue(longValue)));
+	protected final T setValue(double doubleValue) {
+		assign(slot(), byteValue(doubleValue));
 		return (T) this;
 	}
 
-	private void copyResultToSetter() {
-		if (!isResult) {
-			return;
+	protected final T setValue(float floatValue) {
+		assign(slot(), byteValue(floatValue));
+		return (T) this;
+	}
+
+	protected final T setValue(boolean booleanValue) {
+		byte[] bytes = new byte[1];
+		writeValue(bytes, 0, booleanValue);
+		assign(slot(), bytes);
+		return (T) this;
+	}
+
+	/**
+	 * Stores 4 bytes, <code>setValue(int)</code> would widen to the 8 bytes of <code>setValue(long)</code>.
+	 */
+	protected final T setInt(int intValue) {
+		assign(slot(), byteValue(intValue));
+		return (T) this;
+	}
+
+	/**
+	 * Stores 2 bytes, <code>setValue(short)</code> would widen to the 8 bytes of <code>setValue(long)</code>.
+	 */
+	protected final T setShort(short shortValue) {
+		byte[] bytes = new byte[Short.BYTES];
+		writeValue(bytes, 0, shortValue);
+		assign(slot(), bytes);
+		return (T) this;
+	}
+
+	/**
+	 * Called by generated accessors around their body, see <code>ModelAccessors</code>.
+	 *
+	 * @return the previous slot, to be restored when the accessor returns
+	 */
+	protected final int currentSlot(int slot) {
+		int previous = this.slot;
+		this.slot = slot;
+		return previous;
+	}
+
+	/**
+	 * @return slot of the accessor calling <code>setValue</code> or <code>retrieveValue</code>, set by the
+	 * generated accessor, or the nearest column accessor of this model on the stack for models created with
+	 * <code>new</code>
+	 */
+	private int slot() {
+		ModelColumns columns = columns();
+		if (slot >= 0) {
+			return slot;
 		}
 
-		if (!copy) {
-			copy = true;
-		} else {
-			return;
+		for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+			int found = columns.slot(frame.getMethodName());
+			if (found >= 0 && declares(frame.getClassName())) {
+				return found;
+			}
 		}
 
-		result.listCells()
-			.stream()
-			.forEach(cell -> {
-				String family = stringValue(CellUtil.cloneFamily(cell));
-				String qualifier = stringValue(CellUtil.cloneQualifier(cell));
-				String methodName = ModelFQFields.get(tableName())
-					.get(family + "+-" + qualifier);
-				if (methodName != null) {
-					setValues.put(methodName, new ValueSetterPackage(family, qualifier, CellUtil.cloneValue(cell)));
-				}
-			});
+		throw new InvalidOperationException(String.format("%s has no column accessor on the stack",
+			tableName().get().getNameAsString()));
 	}
 
-	public static final String stringValue(byte[] bytes) {
-		return bytes == null ? null : new String(bytes, HBaseClient.DEFAULT_CHARSET);
+	private boolean declares(String className) {
+		for (Class type = getClass(); type != Object.class; type = type.getSuperclass()) {
+			if (type.getName().equals(className)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private ModelColumns columns() {
+		if (columns == null) {
+			columns = ModelColumnTables.get(tableName());
+			values = new byte[columns.size()][];
+			assigned = new boolean[columns.size()];
+		}
+
+		return columns;
 	}
 
-	private final String family(String methodName) {
-		return ModelFamilies.get(tableName()).get(methodName).family();
+	private void assign(int slot, byte[] value) {
+		values[slot] = value;
+		assigned[slot] = true;
 	}
 
-	private final String qualifier(String methodName) {
-		return ModelQualifiers.get(tableName()).get(methodName).qualifier();
+	private boolean assigned(String accessor) {
+		int slot = columns().slot(accessor);
+		return slot >= 0 && assigned[slot];
+	}
+
+	public static final String stringValue(byte[] bytes) {
+		return bytes == null ? null : new String(bytes, HBaseClient.DEFAULT_CHARSET);
 	}
 
 	public static final byte[] byteValue(Object object) {
@@ -390,19 +635,19 @@ public abstract class HTableModel<T extends HTableModel> {
 		}
 
 		if (object instanceof Long) {
-			return ByteBuffer.allocate(8).putLong((Long) object).array();
+			return byteValue((long) (Long) object);
 		}
 
 		if (object instanceof Integer) {
-			return ByteBuffer.allocate(4).putInt((Integer) object).array();
+			return byteValue((int) (Integer) object);
 		}
 
 		if (object instanceof Float) {
-			return ByteBuffer.allocate(4).putFloat((Float) object).array();
+			return byteValue((float) (Float) object);
 		}
 
 		if (object instanceof Double) {
-			return ByteBuffer.allocate(8).putDouble((Double) object).array();
+			return byteValue((double) (Double) object);
 		}
 
 		if (object == null) {
@@ -412,6 +657,154 @@ public abstract class HTableModel<T extends HTableModel> {
 		return object.toString().getBytes(HBaseClient.DEFAULT_CHARSET);
 	}
 
+	public static final byte[] byteValue(long value) {
+		byte[] rtn = new byte[Long.BYTES];
+		writeValue(rtn, 0, value);
+		return rtn;
+	}
+
+	public static final byte[] byteValue(int value) {
+		byte[] rtn = new byte[Integer.BYTES];
+		writeValue(rtn, 0, value);
+		return rtn;
+	}
+
+	public static final byte[] byteValue(double value) {
+		byte[] rtn = new byte[Double.BYTES];
+		writeValue(rtn, 0, value);
+		return rtn;
+	}
+
+	public static final byte[] byteValue(float value) {
+		byte[] rtn = new byte[Float.BYTES];
+		writeValue(rtn, 0, value);
+		return rtn;
+	}
+
+	/**
+	 * Big-endian, the same bytes as <code>byteValue(Object)</code> of a <code>Long</code>.
+	 *
+	 * @return offset after the written value
+	 */
+	public static final int writeValue(byte[] bytes, int offset, long value) {
+		for (int i = offset + Long.BYTES - 1; i >= offset; i--) {
+			bytes[i] = (byte) value;
+			value >>>= 8;
+		}
+
+		return offset + Long.BYTES;
+	}
+
+	public static final int writeValue(byte[] bytes, int offset, int value) {
+		for (int i = offset + Integer.BYTES - 1; i >= offset; i--) {
+			bytes[i] = (byte) value;
+			value >>>= 8;
+		}
+
+		return offset + Integer.BYTES;
+	}
+
+	public static final int writeValue(byte[] bytes, int offset, short value) {
+		bytes[offset] = (byte) (value >>> 8);
+		bytes[offset + 1] = (byte) value;
+		return offset + Short.BYTES;
+	}
+
+	public static final int writeValue(byte[] bytes, int offset, double value) {
+		return writeValue(bytes, offset, Double.doubleToRawLongBits(value));
+	}
+
+	public static final int writeValue(byte[] bytes, int offset, float value) {
+		return writeValue(bytes, offset, Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * One byte, <code>-1</code> for true and <code>0</code> for false, as HBase <code>Bytes.toBytes(boolean)</code>.
+	 *
+	 * @return offset after the written value
+	 */
+	public static final int writeValue(byte[] bytes, int offset, boolean value) {
+		bytes[offset] = value ? (byte) -1 : (byte) 0;
+		return offset + 1;
+	}
+
+	/**
+	 * Big-endian, as written by <code>writeValue</code>.
+	 *
+	 * @return decoded value, or <code>defaultValue</code> when <code>bytes</code> is null
+	 * @throws BufferUnderflowException when <code>bytes</code> is shorter than the value
+	 */
+	public static final long longValue(byte[] bytes, long defaultValue) {
+		return bytes == null ? defaultValue : longValue(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @throws BufferUnderflowException when <code>length</code> is shorter than the value
+	 */
+	public static final long longValue(byte[] bytes, int offset, int length) {
+		require(length, Long.BYTES);
+		long rtn = 0;
+		for (int i = offset; i < offset + Long.BYTES; i++) {
+			rtn = (rtn << 8) | (bytes[i] & 0xFF);
+		}
+
+		return rtn;
+	}
+
+	public static final int intValue(byte[] bytes, int defaultValue) {
+		return bytes == null ? defaultValue : intValue(bytes, 0, bytes.length);
+	}
+
+	public static final int intValue(byte[] bytes, int offset, int length) {
+		require(length, Integer.BYTES);
+		int rtn = 0;
+		for (int i = offset; i < offset + Integer.BYTES; i++) {
+			rtn = (rtn << 8) | (bytes[i] & 0xFF);
+		}
+
+		return rtn;
+	}
+
+	public static final short shortValue(byte[] bytes, short defaultValue) {
+		return bytes == null ? defaultValue : shortValue(bytes, 0, bytes.length);
+	}
+
+	public static final short shortValue(byte[] bytes, int offset, int length) {
+		require(length, Short.BYTES);
+		return (short) (((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF));
+	}
+
+	public static final double doubleValue(byte[] bytes, double defaultValue) {
+		return bytes == null ? defaultValue : doubleValue(bytes, 0, bytes.length);
+	}
+
+	public static final double doubleValue(byte[] bytes, int offset, int length) {
+		return Double.longBitsToDouble(longValue(bytes, offset, length));
+	}
+
+	public static final float floatValue(byte[] bytes, float defaultValue) {
+		return bytes == null ? defaultValue : floatValue(bytes, 0, bytes.length);
+	}
+
+	public static final float floatValue(byte[] bytes, int offset, int length) {
+		return Float.intBitsToFloat(intValue(bytes, offset, length));
+	}
+
+	public static final boolean booleanValue(byte[] bytes, boolean defaultValue) {
+		return bytes == null ? defaultValue : booleanValue(bytes, 0, bytes.length);
+	}
+
+	public static final boolean booleanValue(byte[] bytes, int offset, int length) {
+		require(length, 1);
+		return bytes[offset] != 0;
+	}
+
+	private static void require(int length, int width) {
+		if (length < width) {
+			throw new BufferUnderflowException();
+		}
+	}
+
 	/**
 	 * When this instance is Operation result and the result is Empty, then do
 	 *
@@ -466,20 +859,12 @@ public abstract class HTableModel<T extends HTableModel> {
 	}
 
 	protected final T setValue(String string) {
-		copyResultToSetter();
-
-		String methodName = Thread.currentThread().getStackTrace()[2].getMethodName();
-		this.setValues.put(methodName,
-			new ValueSetterPackage(family(methodName), qualifier(methodName), byteValue(string)));
+		assign(slot(), byteValue(string));
 		return (T) this;
 	}
 
 	protected final T setValue(byte[] bytes) {
-		copyResultToSetter();
-
-		String methodName = Thread.currentThread().getStackTrace()[2].getMethodName();
-		this.setValues.put(methodName,
-			new ValueSetterPackage(family(methodName), qualifier(methodName), bytes));
+		assign(slot(), bytes);
 		return (T) this;
 	}
 
@@ -488,27 +873,96 @@ public abstract class HTableModel<T extends HTableModel> {
 	}
 
 	public static final Long longValue(byte[] bytes) {
-		return bytes == null ? null : ByteBuffer.wrap(bytes).getLong();
+		return bytes == null ? null : longValue(bytes, 0L);
 	}
 
+	/**
+	 * @return the value set on this model, or else the value of the fetched <code>Result</code>, copied out
+	 * of the cell only now
+	 */
 	protected final byte[] retrieveValue() {
-		String methodName = Thread.currentThread().getStackTrace()[2].getMethodName();
-		if (isResult && !copy) {
-			return result.getValue(HBaseClient.bytes(family(methodName)), HBaseClient.bytes(qualifier(methodName)));
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return values[slot];
+		}
+
+		return result.getValue(columns.family(slot), columns.qualifier(slot));
+	}
+
+	/**
+	 * The <code>retrieve</code> primitives decode the set value or the fetched cell in place, without boxing
+	 * or copying.
+	 *
+	 * @return decoded value, or <code>defaultValue</code> when the column has none
+	 * @throws BufferUnderflowException when the column value is shorter than the type
+	 */
+	protected final long retrieveLong(long defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return longValue(values[slot], defaultValue);
+		}
+
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: longValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	protected final int retrieveInt(int defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return intValue(values[slot], defaultValue);
+		}
+
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: intValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	protected final short retrieveShort(short defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return shortValue(values[slot], defaultValue);
 		}
 
-		return setValues.getOrDefault(methodName, DEFAULT_VALUE_SETTER_PACKAGE).value;
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: shortValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
 	}
 
-	private static class ValueSetterPackage {
-		public String family;
-		public String qualifier;
-		public byte[] value;
+	protected final double retrieveDouble(double defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return doubleValue(values[slot], defaultValue);
+		}
 
-		public ValueSetterPackage(String family, String qualifier, byte[] value) {
-			this.family = family;
-			this.qualifier = qualifier;
-			this.value = value;
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: doubleValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	protected final float retrieveFloat(float defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return floatValue(values[slot], defaultValue);
 		}
+
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: floatValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	protected final boolean retrieveBoolean(boolean defaultValue) {
+		int slot = slot();
+		if (assigned[slot] || !isResult) {
+			return booleanValue(values[slot], defaultValue);
+		}
+
+		Cell cell = cell(slot);
+		return cell == null ? defaultValue
+			: booleanValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+	}
+
+	private Cell cell(int slot) {
+		return result == null ? null : result.getColumnLatestCell(columns.family(slot), columns.qualifier(slot));
 	}
 }
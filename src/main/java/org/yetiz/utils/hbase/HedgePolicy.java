@@ -0,0 +1,33 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * Hedged reads of one table, see <code>HBaseClient.Builder.hedgedReads</code>.
+ */
+public final class HedgePolicy {
+	public static final long DEFAULT_DELAY = 50;
+	private long delay = DEFAULT_DELAY;
+
+	private HedgePolicy() {
+	}
+
+	public static final HedgePolicy create() {
+		return new HedgePolicy();
+	}
+
+	/**
+	 * milliseconds to wait for the primary region before the Get is also sent to the region replicas,
+	 * shared by the whole connection, see <code>HBaseClient.Builder.hedgedReads</code>
+	 */
+	public long delay() {
+		return delay;
+	}
+
+	public HedgePolicy delay(long delay) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay must not be negative");
+		}
+
+		this.delay = delay;
+		return this;
+	}
+}
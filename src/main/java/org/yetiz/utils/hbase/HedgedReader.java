@@ -0,0 +1,97 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Consistency;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged Gets of one table.
+ * <p>
+ * Gets of a table with region replicas are sent with <code>Consistency.TIMELINE</code>; the HBase client
+ * then asks the primary region first and, when no answer came back within
+ * <code>hbase.client.primaryCallTimeout.get</code> (<code>.multiget</code> for the Gets of an async batch),
+ * the region replicas too, inside its own RPC machinery. The first answer wins; an answer from a replica
+ * may lag behind the primary and carries <code>Result.isStale()</code>. Gets of a table without region
+ * replicas are left as they are, there is nobody to hedge to.
+ */
+class HedgedReader {
+	static final String PRIMARY_CALL_TIMEOUT_GET = "hbase.client.primaryCallTimeout.get";
+	static final String PRIMARY_CALL_TIMEOUT_MULTIGET = "hbase.client.primaryCallTimeout.multiget";
+	private final HBaseClient client;
+	private final TableName tableName;
+	private final LongAdder hedged;
+	private final LongAdder stale;
+	private volatile int replication = 0;
+
+	HedgedReader(HBaseClient client, TableName tableName) {
+		this.client = client;
+		this.tableName = tableName;
+		String name = "hedge." + tableName.get().getNameAsString();
+		this.hedged = client.metrics().counter(name + ".hedged");
+		this.stale = client.metrics().counter(name + ".stale");
+	}
+
+	/**
+	 * The primary call timeouts belong to the connection, so the smallest <code>HedgePolicy.delay()</code>
+	 * is used for every hedged table; timeouts already set in <code>configuration</code> are kept.
+	 */
+	static void configure(Configuration configuration, Collection<HedgePolicy> policies) {
+		policies.stream()
+			.mapToLong(HedgePolicy::delay)
+			.min()
+			.ifPresent(delay -> {
+				long micros = TimeUnit.MILLISECONDS.toMicros(delay);
+				if (configuration.get(PRIMARY_CALL_TIMEOUT_GET) == null) {
+					configuration.setLong(PRIMARY_CALL_TIMEOUT_GET, micros);
+				}
+
+				if (configuration.get(PRIMARY_CALL_TIMEOUT_MULTIGET) == null) {
+					configuration.setLong(PRIMARY_CALL_TIMEOUT_MULTIGET, micros);
+				}
+			});
+	}
+
+	/**
+	 * @return a TIMELINE copy of <code>get</code> when the table has region replicas, otherwise
+	 * <code>get</code> itself
+	 */
+	Get hedged(Get get) {
+		if (get.getConsistency() == Consistency.TIMELINE || replication() <= 1) {
+			return get;
+		}
+
+		hedged.increment();
+		Get rtn = new Get(get);
+		rtn.setConsistency(Consistency.TIMELINE);
+		return rtn;
+	}
+
+	/**
+	 * count the answers served by a replica
+	 */
+	Result observe(Result result) {
+		if (result != null && result.isStale()) {
+			stale.increment();
+		}
+
+		return result;
+	}
+
+	private int replication() {
+		if (replication == 0) {
+			try (Table table = client.connection().getTable(tableName.get())) {
+				replication = Math.max(1, table.getTableDescriptor().getRegionReplication());
+			} catch (Throwable throwable) {
+				return 1;
+			}
+		}
+
+		return replication;
+	}
+}
@@ -0,0 +1,99 @@
+package org.yetiz.utils.hbase;
+
+import javassist.*;
+import javassist.bytecode.AccessFlag;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Generate, per model, a subclass whose column accessors hand their slot to the model before running.
+ * <p>
+ * Every overridable accessor of a column, setter or getter, is overridden with
+ * <pre>
+ * previous = currentSlot(3); // the slot of the accessor column, resolved once here
+ * try { return super.name(...); } finally { currentSlot(previous); }
+ * </pre>
+ * so <code>setValue</code> and <code>retrieveValue</code> know their column without walking the stack, and an
+ * accessor delegating to another accessor of the model works on the column of the inner one until it returns.
+ * <p>
+ * The subclass, <code>&lt;model&gt;$$Accessors</code>, is what <code>HTableModel.newModel</code> and
+ * wrapped results instantiate; it is defined by a child loader of the model loader. Final models and
+ * final or package-private accessors can not be overridden from there and are left to the stack lookup
+ * of <code>HTableModel</code>.
+ */
+class ModelAccessors {
+	static final String SUFFIX = "$$Accessors";
+
+	/**
+	 * @return the generated subclass of <code>type</code>, null when it can not be generated
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends HTableModel> Class<? extends T> generate(Class<T> type, ModelColumns columns) {
+		if (Modifier.isFinal(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+			return null;
+		}
+
+		try {
+			ClassPool pool = new ClassPool(true);
+			pool.appendClassPath(new LoaderClassPath(type.getClassLoader()));
+			CtClass base = pool.get(type.getName());
+			CtClass generated = pool.makeClass(type.getName() + SUFFIX, base);
+			generated.addConstructor(CtNewConstructor.defaultConstructor(generated));
+			Set<String> overridden = new HashSet<>();
+			for (CtClass declaring = base; !declaring.getName().equals(Object.class.getName());
+			     declaring = declaring.getSuperclass()) {
+				for (CtMethod method : declaring.getDeclaredMethods()) {
+					int slot = columns.slot(method.getName());
+					if (slot < 0 || !overridden.add(method.getName() + method.getSignature())
+						|| !overridable(method)) {
+						continue;
+					}
+
+					String call = "super." + method.getName() + "($$);";
+					String body = "{ int previous = currentSlot(" + slot + "); try { "
+						+ (method.getReturnType() == CtClass.voidType ? call : "return " + call)
+						+ " } finally { currentSlot(previous); } }";
+					CtMethod override = CtNewMethod.make(method.getModifiers() & ~Modifier.NATIVE & ~Modifier.SYNCHRONIZED,
+						method.getReturnType(), method.getName(), method.getParameterTypes(), method.getExceptionTypes(),
+						body, generated);
+					generated.addMethod(override);
+				}
+			}
+
+			byte[] bytecode = generated.toBytecode();
+			generated.detach();
+			return (Class<? extends T>) new GeneratedClassLoader(type.getClassLoader())
+				.define(generated.getName(), bytecode, type);
+		} catch (Throwable throwable) {
+			return null;
+		}
+	}
+
+	private static boolean overridable(CtMethod method) {
+		int modifiers = method.getModifiers();
+		if (Modifier.isPrivate(modifiers)
+			|| Modifier.isFinal(modifiers)
+			|| Modifier.isStatic(modifiers)
+			|| Modifier.isAbstract(modifiers)
+			|| (method.getMethodInfo().getAccessFlags() & (AccessFlag.BRIDGE | AccessFlag.SYNTHETIC)) != 0) {
+			return false;
+		}
+
+		return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers);
+	}
+
+	/**
+	 * Child loader of the model loader, so the generated class resolves the model and this library
+	 * without reflective access to <code>ClassLoader.defineClass</code>.
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+		GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytecode, Class<?> neighbor) {
+			return defineClass(name, bytecode, 0, bytecode.length, neighbor.getProtectionDomain());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable column table of one model: every annotated column gets a slot holding its accessor name and
+ * its pre-encoded family and qualifier.
+ * <p>
+ * Slots are sorted by family, then qualifier, so a cell finds its slot by a binary search that compares
+ * the cell backing arrays in place, without cloning or decoding them.
+ */
+final class ModelColumns {
+	private final String[] accessors;
+	private final byte[][] families;
+	private final byte[][] qualifiers;
+	private final HashMap<String, Integer> slots = new HashMap<>();
+
+	ModelColumns(Map<String, Family> families, Map<String, Qualifier> qualifiers) {
+		List<String> names = new ArrayList<>();
+		qualifiers.keySet().forEach(name -> {
+			if (families.containsKey(name)) {
+				names.add(name);
+			}
+		});
+		names.sort((a, b) -> {
+			int compare = Bytes.compareTo(HBaseClient.bytes(families.get(a).family()),
+				HBaseClient.bytes(families.get(b).family()));
+			return compare != 0 ? compare : Bytes.compareTo(HBaseClient.bytes(qualifiers.get(a).qualifier()),
+				HBaseClient.bytes(qualifiers.get(b).qualifier()));
+		});
+
+		this.accessors = names.toArray(new String[names.size()]);
+		this.families = new byte[accessors.length][];
+		this.qualifiers = new byte[accessors.length][];
+		for (int slot = 0; slot < accessors.length; slot++) {
+			this.families[slot] = HBaseClient.bytes(families.get(accessors[slot]).family());
+			this.qualifiers[slot] = HBaseClient.bytes(qualifiers.get(accessors[slot]).qualifier());
+			this.slots.put(accessors[slot], slot);
+		}
+	}
+
+	int size() {
+		return accessors.length;
+	}
+
+	/**
+	 * @return slot of <code>accessor</code>, -1 when it is not a column accessor
+	 */
+	int slot(String accessor) {
+		Integer slot = slots.get(accessor);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return slot of the column of <code>cell</code>, -1 when the model does not declare it
+	 */
+	int slot(Cell cell) {
+		int low = 0;
+		int high = accessors.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = Bytes.compareTo(families[middle], 0, families[middle].length,
+				cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength());
+			if (compare == 0) {
+				compare = Bytes.compareTo(qualifiers[middle], 0, qualifiers[middle].length,
+					cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+			}
+
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -1;
+	}
+
+	String accessor(int slot) {
+		return accessors[slot];
+	}
+
+	byte[] family(int slot) {
+		return families[slot];
+	}
+
+	byte[] qualifier(int slot) {
+		return qualifiers[slot];
+	}
+}
@@ -0,0 +1,228 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.*;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Server-side row predicate over the annotated columns of an <code>HTableModel</code>, compiled to HBase
+ * filters so only matching rows leave the region servers.
+ * <pre>
+ * ModelFilter filter = ModelFilter.column(User.class, "name").prefix("yeti")
+ *     .and(ModelFilter.column(User.class, "age").between(18L, 30L));
+ * model.scan(new Scan(), filter);
+ * </pre>
+ * Values are encoded with <code>HTableModel.byteValue</code> and compared as unsigned bytes, so ranges follow
+ * the natural order of strings and of non-negative numbers only. A number is encoded with the width of its
+ * boxed type, so it has to be of the type the accessor stores: a <code>Long</code> for
+ * <code>setValue(long)</code>, an <code>Integer</code> for <code>setInt</code>; <code>between(18, 30)</code>
+ * never matches a <code>setValue(long)</code> column. A row without the column never matches.
+ */
+public abstract class ModelFilter {
+
+	ModelFilter() {
+	}
+
+	public static final Column column(Class<? extends HTableModel> model, String accessor) {
+		return column(HTableModel.tableName(model), accessor);
+	}
+
+	/**
+	 * @param accessor accessor method name of the model of <code>tableName</code>
+	 */
+	public static final Column column(TableName tableName, String accessor) {
+		byte[][] column = HTableModel.columns(tableName, accessor).get(0);
+		return new Column(column[0], column[1]);
+	}
+
+	/**
+	 * @return matches rows every filter matches
+	 */
+	public static final ModelFilter allOf(ModelFilter... filters) {
+		return new Composite(FilterList.Operator.MUST_PASS_ALL, filters);
+	}
+
+	/**
+	 * @return matches rows any filter matches
+	 */
+	public static final ModelFilter anyOf(ModelFilter... filters) {
+		return new Composite(FilterList.Operator.MUST_PASS_ONE, filters);
+	}
+
+	public ModelFilter and(ModelFilter filter) {
+		return allOf(this, filter);
+	}
+
+	public ModelFilter or(ModelFilter filter) {
+		return anyOf(this, filter);
+	}
+
+	/**
+	 * @return the HBase filter of this predicate
+	 */
+	public abstract Filter toFilter();
+
+	/**
+	 * family and qualifier of every column the predicate reads
+	 */
+	abstract void columns(List<byte[][]> columns);
+
+	/**
+	 * @return a copy of <code>scan</code> that also has to match this predicate; when <code>scan</code> is
+	 * restricted to some columns, the columns the predicate reads are fetched as well
+	 */
+	public Scan applyTo(Scan scan) {
+		try {
+			Scan rtn = new Scan(scan);
+			rtn.setFilter(combine(scan.getFilter()));
+			if (rtn.hasFamilies()) {
+				fetch(rtn.getFamilyMap(), rtn::addColumn);
+			}
+
+			return rtn;
+		} catch (IOException e) {
+			throw new UnHandledException(e);
+		}
+	}
+
+	/**
+	 * @return a copy of <code>get</code> that also has to match this predicate, see <code>applyTo(Scan)</code>
+	 */
+	public Get applyTo(Get get) {
+		Get rtn = new Get(get);
+		rtn.setFilter(combine(get.getFilter()));
+		if (rtn.hasFamilies()) {
+			fetch(rtn.getFamilyMap(), rtn::addColumn);
+		}
+
+		return rtn;
+	}
+
+	/**
+	 * add the columns the predicate reads unless their whole family is requested already
+	 */
+	private void fetch(Map<byte[], NavigableSet<byte[]>> families, BiConsumer<byte[], byte[]> addColumn) {
+		List<byte[][]> columns = new ArrayList<>();
+		columns(columns);
+		columns.forEach(column -> {
+			if (!families.containsKey(column[0]) || families.get(column[0]) != null) {
+				addColumn.accept(column[0], column[1]);
+			}
+		});
+	}
+
+	private Filter combine(Filter filter) {
+		return filter == null ? toFilter() : new FilterList(FilterList.Operator.MUST_PASS_ALL, filter, toFilter());
+	}
+
+	/**
+	 * One annotated column of a model, the start of a predicate.
+	 */
+	public static final class Column {
+		private final byte[] family;
+		private final byte[] qualifier;
+
+		private Column(byte[] family, byte[] qualifier) {
+			this.family = family;
+			this.qualifier = qualifier;
+		}
+
+		public ModelFilter eq(Object value) {
+			return compare(CompareOp.EQUAL, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		public ModelFilter ne(Object value) {
+			return compare(CompareOp.NOT_EQUAL, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		public ModelFilter lt(Object value) {
+			return compare(CompareOp.LESS, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		public ModelFilter le(Object value) {
+			return compare(CompareOp.LESS_OR_EQUAL, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		public ModelFilter gt(Object value) {
+			return compare(CompareOp.GREATER, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		public ModelFilter ge(Object value) {
+			return compare(CompareOp.GREATER_OR_EQUAL, new BinaryComparator(HTableModel.byteValue(value)));
+		}
+
+		/**
+		 * @return matches values from <code>low</code> to <code>high</code>, both inclusive
+		 */
+		public ModelFilter between(Object low, Object high) {
+			return allOf(ge(low), le(high));
+		}
+
+		public ModelFilter prefix(Object value) {
+			return compare(CompareOp.EQUAL, new BinaryPrefixComparator(HTableModel.byteValue(value)));
+		}
+
+		private ModelFilter compare(CompareOp op, ByteArrayComparable comparator) {
+			return new Comparison(family, qualifier, op, comparator);
+		}
+	}
+
+	private static final class Comparison extends ModelFilter {
+		private final byte[] family;
+		private final byte[] qualifier;
+		private final CompareOp op;
+		private final ByteArrayComparable comparator;
+
+		Comparison(byte[] family, byte[] qualifier, CompareOp op, ByteArrayComparable comparator) {
+			this.family = family;
+			this.qualifier = qualifier;
+			this.op = op;
+			this.comparator = comparator;
+		}
+
+		@Override
+		public Filter toFilter() {
+			SingleColumnValueFilter filter = new SingleColumnValueFilter(family, qualifier, op, comparator);
+			filter.setFilterIfMissing(true);
+			filter.setLatestVersionOnly(true);
+			return filter;
+		}
+
+		@Override
+		void columns(List<byte[][]> columns) {
+			columns.add(new byte[][]{family, qualifier});
+		}
+	}
+
+	private static final class Composite extends ModelFilter {
+		private final FilterList.Operator operator;
+		private final List<ModelFilter> filters;
+
+		Composite(FilterList.Operator operator, ModelFilter... filters) {
+			this.operator = operator;
+			this.filters = Arrays.asList(filters);
+		}
+
+		@Override
+		public Filter toFilter() {
+			FilterList list = new FilterList(operator);
+			filters.forEach(filter -> list.addFilter(filter.toFilter()));
+			return list;
+		}
+
+		@Override
+		void columns(List<byte[][]> columns) {
+			filters.forEach(filter -> filter.columns(columns));
+		}
+	}
+}
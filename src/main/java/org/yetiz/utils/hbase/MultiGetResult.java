@@ -0,0 +1,99 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Get;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a region-parallel multi-get, indexed like the requested Gets.
+ * <p>
+ * A Get whose chunk failed or timed out has no result and an error instead; the other Gets are kept.
+ * When the results were streamed to a consumer they are not retained here.
+ */
+public class MultiGetResult<T> {
+	private final List<Get> gets;
+	private final Object[] results;
+	private final TreeMap<Integer, Throwable> errors = new TreeMap<>();
+	private int succeeded = 0;
+
+	MultiGetResult(List<Get> gets, boolean retain) {
+		this.gets = gets;
+		this.results = retain ? new Object[gets.size()] : null;
+	}
+
+	void succeed(int index, T result) {
+		succeeded++;
+		if (results != null) {
+			results[index] = result;
+		}
+	}
+
+	void fail(int index, Throwable throwable) {
+		errors.put(index, throwable);
+	}
+
+	/**
+	 * @return number of requested Gets
+	 */
+	public int size() {
+		return gets.size();
+	}
+
+	/**
+	 * @return number of Gets answered
+	 */
+	public int succeeded() {
+		return succeeded;
+	}
+
+	/**
+	 * @return true when every Get was answered
+	 */
+	public boolean complete() {
+		return errors.isEmpty();
+	}
+
+	/**
+	 * @return result of the Get at <code>index</code>, null when it failed or results were streamed
+	 */
+	@SuppressWarnings("unchecked")
+	public T result(int index) {
+		return results == null ? null : (T) results[index];
+	}
+
+	/**
+	 * @return results in request order, null for failed Gets; empty when results were streamed
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> results() {
+		if (results == null) {
+			return new ArrayList<>();
+		}
+
+		return (List<T>) Arrays.asList(results);
+	}
+
+	/**
+	 * @return error of the Get at <code>index</code>, null when it was answered
+	 */
+	public Throwable error(int index) {
+		return errors.get(index);
+	}
+
+	/**
+	 * @return errors by request index
+	 */
+	public TreeMap<Integer, Throwable> errors() {
+		return errors;
+	}
+
+	/**
+	 * @return the requested Get at <code>index</code>
+	 */
+	public Get get(int index) {
+		return gets.get(index);
+	}
+}
@@ -0,0 +1,231 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.*;
+import org.yetiz.utils.hbase.exception.OperationTimeoutException;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+import org.yetiz.utils.hbase.exception.YHBaseException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Region-parallel multi-get.
+ * <p>
+ * The Gets are grouped by hosting region and cut into chunks of at most <code>chunkSize</code>, every
+ * chunk runs on the read executor (<code>Builder.readThreads</code>, kept apart from the write dispatchers)
+ * and converts its own results. The calling thread hands each chunk to the consumer as soon as it
+ * completes, so one slow region only holds back its own rows. A chunk gets
+ * <code>timeout</code> once it starts running, a chunk still queued after <code>timeout</code> is given up
+ * as well; the Gets of a chunk that failed or timed out are reported as errors and the rest are kept.
+ */
+class MultiGetter {
+	private static final String UNKNOWN_REGION = "unknown";
+	private final HBaseClient client;
+	private final ExecutorService executor;
+	private final int chunkSize;
+	private final LongAdder chunks;
+	private final LongAdder timeouts;
+
+	MultiGetter(HBaseClient client, ExecutorService executor, int chunkSize) {
+		this.client = client;
+		this.executor = executor;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.chunks = client.metrics().counter("multiget.chunks");
+		this.timeouts = client.metrics().counter("multiget.timeouts");
+	}
+
+	private static YHBaseException convertedException(Throwable throwable) {
+		if (throwable instanceof YHBaseException) {
+			return (YHBaseException) throwable;
+		} else {
+			return new UnHandledException(throwable);
+		}
+	}
+
+	/**
+	 * @param indexes request indexes of <code>gets</code> to fetch, the others are already answered
+	 * @param consumer called on the calling thread, in chunk completion order, null to keep results in the
+	 *                 returned <code>MultiGetResult</code>
+	 * @param observer sees every server answer before it is converted, may be null
+	 */
+	<T> void get(TableName tableName,
+	             List<Get> gets,
+	             List<Integer> indexes,
+	             Function<Result, T> converter,
+	             long timeout,
+	             TimeUnit unit,
+	             BiConsumer<Get, T> consumer,
+	             MultiGetResult<T> rtn,
+	             BiConsumer<Get, Result> observer) {
+		long timeoutNanos = unit.toNanos(timeout);
+		LinkedBlockingQueue<Chunk<T>> done = new LinkedBlockingQueue<>();
+		LinkedHashSet<Chunk<T>> pending = new LinkedHashSet<>();
+		group(tableName, gets, indexes).forEach(group -> {
+			for (int from = 0; from < group.size(); from += chunkSize) {
+				Chunk<T> chunk = new Chunk<>(group.subList(from, Math.min(group.size(), from + chunkSize)));
+				pending.add(chunk);
+				chunk.future = executor.submit(() -> run(tableName, gets, chunk, converter, observer, timeoutNanos, done));
+			}
+		});
+		chunks.add(pending.size());
+
+		try {
+			while (!pending.isEmpty()) {
+				long now = System.nanoTime();
+				long wait = Long.MAX_VALUE;
+				for (Chunk<T> chunk : pending) {
+					wait = Math.min(wait, chunk.deadline(timeoutNanos) - now);
+				}
+
+				Chunk<T> chunk = done.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+				if (chunk != null) {
+					if (pending.remove(chunk)) {
+						deliver(gets, chunk, consumer, rtn);
+					}
+
+					continue;
+				}
+
+				now = System.nanoTime();
+				List<Chunk<T>> expired = new ArrayList<>();
+				for (Chunk<T> candidate : pending) {
+					if (candidate.deadline(timeoutNanos) <= now) {
+						expired.add(candidate);
+					}
+				}
+
+				for (Chunk<T> candidate : expired) {
+					pending.remove(candidate);
+					candidate.future.cancel(true);
+					timeouts.increment();
+					OperationTimeoutException exception = new OperationTimeoutException(
+						String.format("%s multi-get chunk of %d rows timed out after %d ms",
+							tableName.get().getNameAsString(), candidate.indexes.size(), unit.toMillis(timeout)));
+					candidate.indexes.forEach(index -> rtn.fail(index, exception));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (Chunk<T> chunk : pending) {
+				chunk.future.cancel(true);
+				chunk.indexes.forEach(index -> rtn.fail(index, new UnHandledException(e)));
+			}
+		}
+	}
+
+	private <T> void run(TableName tableName,
+	                     List<Get> gets,
+	                     Chunk<T> chunk,
+	                     Function<Result, T> converter,
+	                     BiConsumer<Get, Result> observer,
+	                     long timeoutNanos,
+	                     LinkedBlockingQueue<Chunk<T>> done) {
+		chunk.started = System.nanoTime();
+		List<Get> subGets = new ArrayList<>(chunk.indexes.size());
+		chunk.indexes.forEach(index -> subGets.add(gets.get(index)));
+		Object[] results = new Object[subGets.size()];
+		Throwable failure = null;
+		try (Table table = client.connection().getTable(tableName.get())) {
+			if (table instanceof HTable) {
+				((HTable) table).setOperationTimeout((int) Math.min(Integer.MAX_VALUE,
+					TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+			}
+
+			table.batch(subGets, results);
+		} catch (Throwable throwable) {
+			failure = throwable;
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] instanceof Result) {
+				try {
+					if (observer != null) {
+						observer.accept(subGets.get(i), (Result) results[i]);
+					}
+
+					chunk.values[i] = converter.apply((Result) results[i]);
+				} catch (Throwable throwable) {
+					chunk.errors[i] = convertedException(throwable);
+				}
+			} else if (results[i] instanceof Throwable) {
+				chunk.errors[i] = convertedException((Throwable) results[i]);
+			} else {
+				chunk.errors[i] = convertedException(failure == null ? new IllegalStateException("no result") : failure);
+			}
+		}
+
+		done.offer(chunk);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void deliver(List<Get> gets, Chunk<T> chunk, BiConsumer<Get, T> consumer, MultiGetResult<T> rtn) {
+		for (int i = 0; i < chunk.indexes.size(); i++) {
+			int index = chunk.indexes.get(i);
+			if (chunk.errors[i] != null) {
+				rtn.fail(index, chunk.errors[i]);
+				continue;
+			}
+
+			rtn.succeed(index, (T) chunk.values[i]);
+			if (consumer != null) {
+				consumer.accept(gets.get(index), (T) chunk.values[i]);
+			}
+		}
+	}
+
+	private List<List<Integer>> group(TableName tableName, List<Get> gets, List<Integer> indexes) {
+		LinkedHashMap<String, List<Integer>> groups = new LinkedHashMap<>();
+		try (RegionLocator locator = client.connection().getRegionLocator(tableName.get())) {
+			for (Integer index : indexes) {
+				groups.computeIfAbsent(region(locator, gets.get(index)), key -> new ArrayList<>()).add(index);
+			}
+		} catch (Throwable throwable) {
+			groups.clear();
+			groups.put(UNKNOWN_REGION, new ArrayList<>(indexes));
+		}
+
+		return new ArrayList<>(groups.values());
+	}
+
+	private String region(RegionLocator locator, Get get) {
+		try {
+			HRegionLocation location = locator.getRegionLocation(get.getRow());
+			if (location != null && location.getRegionInfo() != null) {
+				return location.getRegionInfo().getEncodedName();
+			}
+		} catch (Throwable throwable) {
+		}
+
+		return UNKNOWN_REGION;
+	}
+
+	private static class Chunk<T> {
+		final List<Integer> indexes;
+		final Object[] values;
+		final Throwable[] errors;
+		final long submitted = System.nanoTime();
+		volatile long started = 0;
+		Future<?> future;
+
+		Chunk(List<Integer> indexes) {
+			this.indexes = indexes;
+			this.values = new Object[indexes.size()];
+			this.errors = new Throwable[indexes.size()];
+		}
+
+		long deadline(long timeoutNanos) {
+			long started = this.started;
+			return (started == 0 ? submitted : started) + timeoutNanos;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.*;
+
+import java.util.*;
+
+/**
+ * Fold the Puts and Deletes a fast batch holds for the same row into fewer, denser mutations.
+ * <p>
+ * A run of Puts becomes one Put where the last write of a cell wins. When Deletes follow the run, every
+ * cell uses the server timestamp and the Deletes remove whole columns, families or rows, the put cells
+ * they remove are dropped from the Put: the Put and the Deletes then touch disjoint cells and give the
+ * same row whichever the batch applies first. <code>RowMutations</code> can not be sent in a multi call,
+ * so the Put and the Deletes stay separate actions. Rows that also carry Appends, Increments or Gets, or
+ * mutations with attributes, are left as they are.
+ */
+class MutationMerger {
+
+	static List<ActionPackage> merge(List<ActionPackage> packages) {
+		LinkedHashMap<ByteKey, List<ActionPackage>> rows = new LinkedHashMap<>();
+		packages.forEach(aPackage ->
+			rows.computeIfAbsent(new ByteKey(aPackage.action.getRow()), key -> new ArrayList<>()).add(aPackage));
+		if (rows.size() == packages.size()) {
+			return packages;
+		}
+
+		List<ActionPackage> merged = new ArrayList<>(rows.size());
+		rows.values().forEach(sequence -> merged.addAll(mergeRow(sequence)));
+		return merged;
+	}
+
+	private static List<ActionPackage> mergeRow(List<ActionPackage> sequence) {
+		if (sequence.size() == 1 || !sequence.stream().allMatch(aPackage -> mergeable(aPackage.action))) {
+			return sequence;
+		}
+
+		List<ActionPackage> rtn = new ArrayList<>();
+		int index = 0;
+		while (index < sequence.size()) {
+			long createdTime = sequence.get(index).createdTime;
+			List<Put> puts = new ArrayList<>();
+			while (index < sequence.size() && sequence.get(index).action instanceof Put) {
+				puts.add((Put) sequence.get(index++).action);
+			}
+
+			List<Delete> deletes = new ArrayList<>();
+			while (index < sequence.size() && sequence.get(index).action instanceof Delete) {
+				deletes.add((Delete) sequence.get(index++).action);
+			}
+
+			if (puts.isEmpty()) {
+				deletes.forEach(delete -> rtn.add(new ActionPackage(delete, createdTime)));
+				continue;
+			}
+
+			Put put = puts.size() == 1 ? puts.get(0) : fold(puts);
+			if (deletes.isEmpty()) {
+				rtn.add(new ActionPackage(put, createdTime));
+			} else if (serverTimestamp(put) && deletes.stream().allMatch(MutationMerger::masksPut)) {
+				Put unmasked = unmasked(put, deletes);
+				if (!unmasked.isEmpty()) {
+					rtn.add(new ActionPackage(unmasked, createdTime));
+				}
+
+				deletes.forEach(delete -> rtn.add(new ActionPackage(delete, createdTime)));
+			} else {
+				rtn.add(new ActionPackage(put, createdTime));
+				deletes.forEach(delete -> rtn.add(new ActionPackage(delete, createdTime)));
+			}
+		}
+
+		return rtn;
+	}
+
+	private static boolean mergeable(Row row) {
+		return (row instanceof Put || row instanceof Delete)
+			&& ((Mutation) row).getAttributesMap().isEmpty()
+			&& ((Mutation) row).getTTL() == Long.MAX_VALUE
+			&& ((Mutation) row).getDurability() == Durability.USE_DEFAULT;
+	}
+
+	/**
+	 * last writer wins per family, qualifier and timestamp
+	 */
+	private static Put fold(List<Put> puts) {
+		TreeMap<Cell, Cell> cells = new TreeMap<>(KeyValue.COMPARATOR);
+		puts.forEach(put -> put.getFamilyCellMap().values().forEach(list -> list.forEach(cell -> {
+			cells.remove(cell);
+			cells.put(cell, cell);
+		})));
+		Put put = new Put(puts.get(0).getRow());
+		try {
+			for (Cell cell : cells.values()) {
+				put.add(cell);
+			}
+		} catch (Throwable throwable) {
+			throw new IllegalStateException(throwable);
+		}
+
+		return put;
+	}
+
+	/**
+	 * the cells of <code>put</code> none of <code>deletes</code> removes
+	 */
+	private static Put unmasked(Put put, List<Delete> deletes) {
+		Put rtn = new Put(put.getRow());
+		try {
+			for (List<Cell> cells : put.getFamilyCellMap().values()) {
+				for (Cell cell : cells) {
+					if (deletes.stream().noneMatch(delete -> masks(delete, cell))) {
+						rtn.add(cell);
+					}
+				}
+			}
+		} catch (Throwable throwable) {
+			throw new IllegalStateException(throwable);
+		}
+
+		return rtn;
+	}
+
+	private static boolean masks(Delete delete, Cell cell) {
+		if (delete.isEmpty()) {
+			return true;
+		}
+
+		List<Cell> markers = delete.getFamilyCellMap().get(CellUtil.cloneFamily(cell));
+		return markers != null && markers.stream().anyMatch(marker ->
+			marker.getTypeByte() == KeyValue.Type.DeleteFamily.getCode() || CellUtil.matchingQualifier(marker, cell));
+	}
+
+	private static boolean serverTimestamp(Mutation mutation) {
+		return mutation.getFamilyCellMap().values().stream()
+			.allMatch(list -> list.stream().allMatch(cell -> cell.getTimestamp() == HConstants.LATEST_TIMESTAMP));
+	}
+
+	private static boolean masksPut(Delete delete) {
+		return delete.getTimeStamp() == HConstants.LATEST_TIMESTAMP
+			&& serverTimestamp(delete)
+			&& delete.getFamilyCellMap().values().stream()
+			.allMatch(list -> list.stream().allMatch(marker ->
+				marker.getTypeByte() == KeyValue.Type.DeleteColumn.getCode()
+					|| marker.getTypeByte() == KeyValue.Type.DeleteFamily.getCode()));
+	}
+}
@@ -0,0 +1,540 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yetiz.utils.hbase.exception.DataSourceException;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Second tier of a <code>RowCache</code> that keeps serialized cells outside the Java heap.
+ * <p>
+ * Results are written as <code>KeyValue</code> bytes, log structured, into fixed size direct or memory-mapped
+ * slabs used as a ring; when the ring wraps, the oldest slab is evicted as a whole. Every entry carries its
+ * row, shape, expire time and a pointer to the previous entry of the same row, so the shapes of a row form a
+ * chain inside the slabs. The only on-heap structure is an open-addressing index of primitive arrays from a
+ * 64-bit row hash to the newest entry of the row, no object is kept per cached row.
+ * <p>
+ * Rows are spread over stripes, each with its own slabs, index and lock. A hit copies the entry into one
+ * array and rebuilds the <code>Result</code> from <code>KeyValue</code> views over it. <code>close()</code>
+ * releases the slabs.
+ */
+class OffHeapStore {
+	private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapStore.class);
+	private static final int MAX_STRIPES = 16;
+	private static final int MIN_SLABS_PER_STRIPE = 4;
+	private static final long NONE = -1;
+	private static final int GENERATION_BITS = 20;
+	private static final long GENERATION_MASK = (1L << GENERATION_BITS) - 1;
+	private static final int MAX_SLABS_PER_STRIPE = 1 << (64 - 32 - GENERATION_BITS);
+	// length, previous entry, expire time, stale flag
+	private static final int ENTRY_HEADER = 4 + 8 + 8 + 1;
+	private final Stripe[] stripes;
+	private final LongAdder hits;
+	private final LongAdder evictions;
+	private volatile boolean closed = false;
+
+	OffHeapStore(String name, CachePolicy policy, HBaseMetrics metrics) {
+		int slabSize = policy.offHeapSlabSize();
+		int count = (int) Math.max(1, policy.offHeapBytes() / slabSize);
+		// a few slabs per stripe, so a wrapping ring drops only part of the stripe
+		int stripeCount = Math.max(Math.max(1, Math.min(MAX_STRIPES, count / MIN_SLABS_PER_STRIPE)),
+			(count + MAX_SLABS_PER_STRIPE - 1) / MAX_SLABS_PER_STRIPE);
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe(policy.offHeapDirectory(), count / stripeCount + (i < count % stripeCount ? 1 : 0),
+				slabSize);
+		}
+
+		this.hits = metrics.counter(name + ".offheap_hits");
+		this.evictions = metrics.counter(name + ".offheap_evictions");
+		metrics.gauge(name + ".offheap_bytes", this::bytes);
+	}
+
+	/**
+	 * 64-bit FNV-1a of <code>row</code> with a final avalanche, never 0
+	 */
+	static long hash(byte[] row) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : row) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash == 0 ? 1 : hash;
+	}
+
+	private Stripe stripe(long hash) {
+		return stripes[(int) ((hash >>> 1) % stripes.length)];
+	}
+
+	Result get(ByteKey row, String shape) {
+		long hash = hash(row.bytes());
+		Result result = stripe(hash).get(hash, row.bytes(), shape.getBytes(HBaseClient.DEFAULT_CHARSET));
+		if (result != null) {
+			hits.increment();
+		}
+
+		return result;
+	}
+
+	void put(ByteKey row, String shape, Result result, long expireTime) {
+		long hash = hash(row.bytes());
+		stripe(hash).put(hash, row.bytes(), shape.getBytes(HBaseClient.DEFAULT_CHARSET), result, expireTime);
+	}
+
+	void invalidate(ByteKey row) {
+		long hash = hash(row.bytes());
+		stripe(hash).invalidate(hash);
+	}
+
+	long bytes() {
+		long rtn = 0;
+		for (Stripe stripe : stripes) {
+			rtn += stripe.bytes();
+		}
+
+		return rtn;
+	}
+
+	/**
+	 * release every slab, later calls miss
+	 */
+	void close() {
+		closed = true;
+		for (Stripe stripe : stripes) {
+			stripe.close();
+		}
+	}
+
+	/**
+	 * Open-addressing map of row hash to entry pointer, linear probing with backward shift deletion.
+	 */
+	static final class Index {
+		private long[] keys;
+		private long[] values;
+		private int size = 0;
+
+		Index(int capacity) {
+			int rtn = 16;
+			while (rtn < capacity) {
+				rtn <<= 1;
+			}
+
+			keys = new long[rtn];
+			values = new long[rtn];
+		}
+
+		private int home(long key, int mask) {
+			return (int) (key ^ (key >>> 32)) & mask;
+		}
+
+		private int find(long key) {
+			int mask = keys.length - 1;
+			int slot = home(key, mask);
+			while (keys[slot] != 0) {
+				if (keys[slot] == key) {
+					return slot;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			return -1 - slot;
+		}
+
+		/**
+		 * @return the pointer of <code>key</code>, or <code>NONE</code>
+		 */
+		long get(long key) {
+			int slot = find(key);
+			return slot >= 0 ? values[slot] : NONE;
+		}
+
+		void put(long key, long value) {
+			int slot = find(key);
+			if (slot >= 0) {
+				values[slot] = value;
+				return;
+			}
+
+			slot = -1 - slot;
+			keys[slot] = key;
+			values[slot] = value;
+			if (++size > keys.length * 3 / 4) {
+				resize();
+			}
+		}
+
+		boolean remove(long key) {
+			int slot = find(key);
+			if (slot < 0) {
+				return false;
+			}
+
+			int mask = keys.length - 1;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (keys[next] == 0) {
+					break;
+				}
+
+				int home = home(keys[next], mask);
+				// move back entries whose probe run passes through the freed slot
+				if (next > slot ? (home <= slot || home > next) : (home <= slot && home > next)) {
+					keys[slot] = keys[next];
+					values[slot] = values[next];
+					slot = next;
+				}
+			}
+
+			keys[slot] = 0;
+			values[slot] = 0;
+			size--;
+			return true;
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void resize() {
+			long[] oldKeys = keys;
+			long[] oldValues = values;
+			keys = new long[oldKeys.length << 1];
+			values = new long[oldKeys.length << 1];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != 0) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Slab ring and index of the rows hashed to it, guarded by its own monitor.
+	 */
+	private final class Stripe {
+		private final ByteBuffer[] slabs;
+		private final File[] files;
+		private final long[] generations;
+		private final int[] used;
+		private final Index index = new Index(1024);
+		private int current = 0;
+
+		Stripe(File directory, int count, int slabSize) {
+			this.slabs = new ByteBuffer[count];
+			this.files = new File[count];
+			this.generations = new long[count];
+			this.used = new int[count];
+			for (int i = 0; i < count; i++) {
+				if (directory != null) {
+					files[i] = file(directory);
+				}
+
+				slabs[i] = allocate(files[i], slabSize);
+			}
+		}
+
+		synchronized Result get(long hash, byte[] row, byte[] shape) {
+			if (closed) {
+				return null;
+			}
+
+			long pointer = index.get(hash);
+			if (pointer != NONE && !matches(pointer, row, null)) {
+				return null;
+			}
+
+			for (; valid(pointer); pointer = previous(pointer)) {
+				if (!matches(pointer, row, shape)) {
+					continue;
+				}
+
+				ByteBuffer slab = slabs[slab(pointer)];
+				int offset = offset(pointer);
+				if (slab.getLong(offset + 12) < System.currentTimeMillis()) {
+					return null;
+				}
+
+				boolean stale = slab.get(offset + 20) != 0;
+				int cellsOffset = offset + ENTRY_HEADER + 4 + row.length + 4 + shape.length;
+				int count = slab.getInt(cellsOffset);
+				byte[] data = new byte[slab.getInt(offset) - (cellsOffset + 4 - offset)];
+				ByteBuffer buffer = slab.duplicate();
+				buffer.position(cellsOffset + 4);
+				buffer.get(data);
+				Cell[] cells = new Cell[count];
+				int position = 0;
+				for (int i = 0; i < count; i++) {
+					int length = ((data[position] & 0xff) << 24) | ((data[position + 1] & 0xff) << 16) |
+						((data[position + 2] & 0xff) << 8) | (data[position + 3] & 0xff);
+					cells[i] = new KeyValue(data, position + 4, length);
+					position += 4 + length;
+				}
+
+				return Result.create(cells, null, stale);
+			}
+
+			return null;
+		}
+
+		synchronized void put(long hash, byte[] row, byte[] shape, Result result, long expireTime) {
+			if (closed) {
+				return;
+			}
+
+			Cell[] cells = result.rawCells() == null ? new Cell[0] : result.rawCells();
+			int length = ENTRY_HEADER + 4 + row.length + 4 + shape.length + 4;
+			for (Cell cell : cells) {
+				length += 4 + KeyValueUtil.length(cell);
+			}
+
+			if (length > slabs[0].capacity()) {
+				return;
+			}
+
+			if (used[current] + length > slabs[current].capacity()) {
+				current = (current + 1) % slabs.length;
+				evict(current);
+			}
+
+			long head = index.get(hash);
+			if (head != NONE && !matches(head, row, null)) {
+				// another row with the same hash, it loses its entries
+				head = NONE;
+			}
+
+			head = unlink(head, row, shape);
+			byte[] data = new byte[length];
+			int offset = 0;
+			offset = HTableModel.writeValue(data, offset, length);
+			offset = HTableModel.writeValue(data, offset, valid(head) ? head : NONE);
+			offset = HTableModel.writeValue(data, offset, expireTime);
+			offset = HTableModel.writeValue(data, offset, result.isStale());
+			offset = HTableModel.writeValue(data, offset, row.length);
+			System.arraycopy(row, 0, data, offset, row.length);
+			offset = HTableModel.writeValue(data, offset + row.length, shape.length);
+			System.arraycopy(shape, 0, data, offset, shape.length);
+			offset = HTableModel.writeValue(data, offset + shape.length, cells.length);
+			for (Cell cell : cells) {
+				offset = HTableModel.writeValue(data, offset, KeyValueUtil.length(cell));
+				offset = KeyValueUtil.appendToByteArray(cell, data, offset);
+			}
+
+			ByteBuffer buffer = slabs[current].duplicate();
+			buffer.position(used[current]);
+			buffer.put(data);
+			index.put(hash, pointer(current, used[current]));
+			used[current] += length;
+		}
+
+		synchronized void invalidate(long hash) {
+			if (!closed) {
+				index.remove(hash);
+			}
+		}
+
+		/**
+		 * drop the entry of <code>shape</code> from the chain starting at <code>head</code>, a newer one replaces it
+		 *
+		 * @return the head of the remaining chain
+		 */
+		private long unlink(long head, byte[] row, byte[] shape) {
+			long previous = NONE;
+			for (long pointer = head; valid(pointer); previous = pointer, pointer = previous(pointer)) {
+				if (matches(pointer, row, shape)) {
+					long next = previous(pointer);
+					if (previous == NONE) {
+						return next;
+					}
+
+					slabs[slab(previous)].putLong(offset(previous) + 4, next);
+					return head;
+				}
+			}
+
+			return head;
+		}
+
+		/**
+		 * drop the index entries of the rows whose newest entry is in <code>slab</code>, before it is overwritten
+		 */
+		private void evict(int slab) {
+			ByteBuffer buffer = slabs[slab];
+			for (int offset = 0; offset < used[slab]; offset += buffer.getInt(offset)) {
+				int rowLength = buffer.getInt(offset + ENTRY_HEADER);
+				byte[] row = new byte[rowLength];
+				ByteBuffer duplicate = buffer.duplicate();
+				duplicate.position(offset + ENTRY_HEADER + 4);
+				duplicate.get(row);
+				long hash = hash(row);
+				long pointer = index.get(hash);
+				if (pointer != NONE && slab(pointer) == slab && generation(pointer) == (generations[slab] & GENERATION_MASK)) {
+					index.remove(hash);
+					evictions.increment();
+				}
+			}
+
+			generations[slab]++;
+			used[slab] = 0;
+		}
+
+		private long pointer(int slab, int offset) {
+			return ((generations[slab] & GENERATION_MASK) << 44) | ((long) slab << 32) | (offset & 0xffffffffL);
+		}
+
+		private int slab(long pointer) {
+			return (int) ((pointer >>> 32) & (MAX_SLABS_PER_STRIPE - 1));
+		}
+
+		private long generation(long pointer) {
+			return pointer >>> 44;
+		}
+
+		private int offset(long pointer) {
+			return (int) pointer;
+		}
+
+		/**
+		 * @return true when <code>pointer</code> still addresses the entry it was created for
+		 */
+		private boolean valid(long pointer) {
+			if (pointer == NONE) {
+				return false;
+			}
+
+			int slab = slab(pointer);
+			return slab < slabs.length
+				&& generation(pointer) == (generations[slab] & GENERATION_MASK)
+				&& offset(pointer) < used[slab];
+		}
+
+		private long previous(long pointer) {
+			return slabs[slab(pointer)].getLong(offset(pointer) + 4);
+		}
+
+		/**
+		 * @param shape null to compare the row only
+		 */
+		private boolean matches(long pointer, byte[] row, byte[] shape) {
+			if (!valid(pointer)) {
+				return false;
+			}
+
+			ByteBuffer slab = slabs[slab(pointer)];
+			int offset = offset(pointer) + ENTRY_HEADER;
+			if (!equals(slab, offset, row)) {
+				return false;
+			}
+
+			return shape == null || equals(slab, offset + 4 + row.length, shape);
+		}
+
+		private boolean equals(ByteBuffer slab, int offset, byte[] bytes) {
+			if (slab.getInt(offset) != bytes.length) {
+				return false;
+			}
+
+			for (int i = 0; i < bytes.length; i++) {
+				if (slab.get(offset + 4 + i) != bytes[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		synchronized long bytes() {
+			long rtn = 0;
+			for (int length : used) {
+				rtn += length;
+			}
+
+			return rtn;
+		}
+
+		synchronized void close() {
+			for (int i = 0; i < slabs.length; i++) {
+				free(slabs[i]);
+				slabs[i] = null;
+				used[i] = 0;
+				if (files[i] != null && !files[i].delete()) {
+					LOGGER.warn("cannot delete off-heap slab " + files[i]);
+				}
+			}
+		}
+	}
+
+	private static File file(File directory) {
+		try {
+			File file = File.createTempFile("hbase-utils-slab", ".bin", directory);
+			file.deleteOnExit();
+			return file;
+		} catch (Throwable throwable) {
+			throw new DataSourceException(throwable);
+		}
+	}
+
+	private static ByteBuffer allocate(File file, int size) {
+		if (file == null) {
+			return ByteBuffer.allocateDirect(size);
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size);
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (Throwable throwable) {
+			throw new DataSourceException(throwable);
+		}
+	}
+
+	/**
+	 * release a direct or mapped buffer now instead of at its garbage collection,
+	 * <code>Unsafe.invokeCleaner</code> on Java 9 and later, the buffer cleaner on Java 8
+	 */
+	private static void free(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (NoSuchMethodException e) {
+		} catch (Throwable throwable) {
+			LOGGER.warn("cannot release off-heap slab, " + throwable);
+			return;
+		}
+
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Throwable throwable) {
+			LOGGER.warn("cannot release off-heap slab, " + throwable);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package org.yetiz.utils.hbase;
+
+/**
+ * What a <code>WriteQueue</code> does when it is already at its count or byte limit.
+ */
+public enum OverflowPolicy {
+	/**
+	 * wait for space up to <code>QueueLimit.blockTimeout()</code>, then throw <code>QueueFullException</code>
+	 */
+	BLOCK,
+	/**
+	 * throw <code>QueueFullException</code> immediately
+	 */
+	REJECT,
+	/**
+	 * evict the oldest queued entries until the new one fits
+	 */
+	DROP_OLDEST,
+	/**
+	 * execute the entry on the calling thread instead of queueing it
+	 */
+	CALLER_RUNS
+}
@@ -0,0 +1,276 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.yetiz.utils.hbase.exception.InvalidOperationException;
+import org.yetiz.utils.hbase.exception.QueueFullException;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+import org.yetiz.utils.hbase.exception.YHBaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scan split at region boundaries, the sub-scans run on <code>parallelism</code> workers that convert
+ * their own rows into bounded buffers, and the caller consumes them through a <code>Spliterator</code>.
+ * <p>
+ * Ordered, the sub-scans are claimed and consumed in key order, so rows come out as one key-ordered
+ * sequence while later regions are read ahead; unordered, rows are consumed as any worker produces them.
+ * The scanners are released when the stream is exhausted, fails or is closed; closing the client stops
+ * the workers too and fails the stream.
+ */
+class ParallelScanner<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+	private static final int DEFAULT_BUFFER = 100;
+	private static final Object END = new Object();
+	private final HBaseClient client;
+	private final TableName tableName;
+	private final Table table;
+	private final Function<Result, T> converter;
+	private final boolean ordered;
+	private final List<Scan> ranges;
+	private final List<LinkedBlockingQueue<Object>> buffers = new ArrayList<>();
+	private final AtomicInteger next = new AtomicInteger(0);
+	private volatile boolean closed = false;
+	private int current = 0;
+	private int ended = 0;
+
+	/**
+	 * @param client when null every sub-scan runs on <code>table</code> and the scan is not split
+	 */
+	ParallelScanner(HBaseClient client,
+	                TableName tableName,
+	                Table table,
+	                Scan scan,
+	                int parallelism,
+	                boolean ordered,
+	                Function<Result, T> converter,
+	                Executor executor) {
+		super(Long.MAX_VALUE, (ordered ? Spliterator.ORDERED : 0) | Spliterator.NONNULL);
+		this.client = client;
+		this.tableName = tableName;
+		this.table = table;
+		this.converter = converter;
+		this.ordered = ordered;
+		this.ranges = split(scan);
+		int buffer = 2 * (scan.getCaching() > 0 ? scan.getCaching() : DEFAULT_BUFFER);
+		LinkedBlockingQueue<Object> shared = ordered ? null : new LinkedBlockingQueue<>(buffer * parallelism);
+		for (int i = 0; i < ranges.size(); i++) {
+			buffers.add(ordered ? new LinkedBlockingQueue<>(buffer) : shared);
+		}
+
+		if (client != null) {
+			client.metrics().counter("scan.parallel.ranges").add(ranges.size());
+		}
+
+		int workers = Math.max(1, Math.min(parallelism, ranges.size()));
+		for (int i = 0; i < workers; i++) {
+			try {
+				executor.execute(this::work);
+			} catch (RejectedExecutionException e) {
+				// the workers started claim every range, fewer of them only lowers the parallelism
+				if (i == 0) {
+					close();
+					throw new QueueFullException("no loop thread left for a parallel scan");
+				}
+
+				break;
+			}
+		}
+	}
+
+	private static YHBaseException convertedException(Throwable throwable) {
+		if (throwable instanceof YHBaseException) {
+			return (YHBaseException) throwable;
+		} else {
+			return new UnHandledException(throwable);
+		}
+	}
+
+	Stream<T> stream() {
+		return new ClosingStream<>(StreamSupport.stream(this, false).onClose(this::close));
+	}
+
+	/**
+	 * @return sub-scans of <code>scan</code>, one per region it overlaps, in key order
+	 */
+	private List<Scan> split(Scan scan) {
+		List<Scan> rtn = new ArrayList<>();
+		if (client == null || scan.isReversed() || scan.isGetScan()) {
+			rtn.add(scan);
+			return rtn;
+		}
+
+		try (RegionLocator locator = client.connection().getRegionLocator(tableName.get())) {
+			Pair<byte[][], byte[][]> keys = locator.getStartEndKeys();
+			byte[] start = scan.getStartRow();
+			byte[] stop = scan.getStopRow();
+			for (int i = 0; i < keys.getFirst().length; i++) {
+				byte[] regionStart = keys.getFirst()[i];
+				byte[] regionStop = keys.getSecond()[i];
+				byte[] from = Bytes.compareTo(start, regionStart) >= 0 ? start : regionStart;
+				byte[] to = lowerStop(stop, regionStop);
+				if (to.length != 0 && Bytes.compareTo(from, to) >= 0) {
+					continue;
+				}
+
+				rtn.add(new Scan(scan).setStartRow(from).setStopRow(to));
+			}
+		} catch (Throwable throwable) {
+			throw convertedException(throwable);
+		}
+
+		if (rtn.isEmpty()) {
+			rtn.add(scan);
+		}
+
+		return rtn;
+	}
+
+	private static byte[] lowerStop(byte[] a, byte[] b) {
+		if (Bytes.equals(a, HConstants.EMPTY_END_ROW)) {
+			return b;
+		}
+
+		if (Bytes.equals(b, HConstants.EMPTY_END_ROW)) {
+			return a;
+		}
+
+		return Bytes.compareTo(a, b) <= 0 ? a : b;
+	}
+
+	private boolean stopped() {
+		return closed || (client != null && client.closed());
+	}
+
+	private void work() {
+		int index;
+		while (!stopped() && (index = next.getAndIncrement()) < ranges.size()) {
+			LinkedBlockingQueue<Object> buffer = buffers.get(index);
+			try {
+				if (client == null) {
+					scan(table, ranges.get(index), buffer);
+				} else {
+					try (Table table = client.connection().getTable(tableName.get())) {
+						scan(table, ranges.get(index), buffer);
+					}
+				}
+			} catch (Throwable throwable) {
+				put(buffer, new Failure(throwable));
+			} finally {
+				put(buffer, END);
+			}
+		}
+	}
+
+	private void scan(Table table, Scan scan, LinkedBlockingQueue<Object> buffer) throws Exception {
+		try (ResultScanner scanner = table.getScanner(scan)) {
+			for (Result result : scanner) {
+				if (!put(buffer, converter.apply(result))) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return false when the scanner or the client was closed while waiting for buffer space
+	 */
+	private boolean put(LinkedBlockingQueue<Object> buffer, Object element) {
+		try {
+			while (!stopped()) {
+				if (buffer.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (!closed) {
+			if (ordered ? current >= ranges.size() : ended >= ranges.size()) {
+				close();
+				return false;
+			}
+
+			Object element;
+			try {
+				element = buffers.get(ordered ? current : 0).poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new UnHandledException(e);
+			}
+
+			if (element == null) {
+				// the workers of a closed client stop without ending their ranges
+				if (stopped()) {
+					close();
+					throw new InvalidOperationException("client closed during a parallel scan");
+				}
+
+				continue;
+			}
+
+			if (element == END) {
+				if (ordered) {
+					current++;
+				} else {
+					ended++;
+				}
+
+				continue;
+			}
+
+			if (element instanceof Failure) {
+				close();
+				throw convertedException(((Failure) element).cause);
+			}
+
+			action.accept((T) element);
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		buffers.forEach(LinkedBlockingQueue::clear);
+	}
+
+	private static class Failure {
+		final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+}
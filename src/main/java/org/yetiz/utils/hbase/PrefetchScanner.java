@@ -0,0 +1,185 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>ResultScanner</code> that reads ahead of its consumer.
+ * <p>
+ * A background task fetches batches of <code>batch</code> rows from the wrapped scanner into a window of at
+ * most <code>window</code> batches, so the next batch is on its way while the current one is processed;
+ * with a window of 1 it is plain double buffering. The wrapped scanner is only touched by the background
+ * task, which also closes it; the task stops when this scanner or its client is closed.
+ */
+class PrefetchScanner implements ResultScanner {
+	private static final Object END = new Object();
+	private static final Result[] EMPTY = new Result[0];
+	private final HBaseClient client;
+	private final ResultScanner scanner;
+	private final int batch;
+	private final ArrayBlockingQueue<Object> buffer;
+	private final LongAdder waits;
+	private volatile boolean closed = false;
+	private boolean exhausted = false;
+	private Result[] current = EMPTY;
+	private int position = 0;
+
+	/**
+	 * @param client may be null for tables opened without a client
+	 * @param waits  counts the times the consumer had to wait for a fetch, may be null
+	 */
+	PrefetchScanner(HBaseClient client, ResultScanner scanner, int batch, int window, Executor executor, LongAdder waits) {
+		this.client = client;
+		this.scanner = scanner;
+		this.batch = Math.max(1, batch);
+		this.buffer = new ArrayBlockingQueue<>(Math.max(1, window) + 1);
+		this.waits = waits;
+		executor.execute(this::fetch);
+	}
+
+	private boolean stopped() {
+		return closed || (client != null && client.closed());
+	}
+
+	private void fetch() {
+		try {
+			while (!stopped()) {
+				Result[] results = scanner.next(batch);
+				if (results == null || results.length == 0) {
+					break;
+				}
+
+				if (!put(results)) {
+					return;
+				}
+			}
+		} catch (Throwable throwable) {
+			put(throwable);
+		} finally {
+			put(END);
+			scanner.close();
+		}
+	}
+
+	/**
+	 * @return false when the scanner or the client was closed while waiting for window space
+	 */
+	private boolean put(Object element) {
+		try {
+			while (!stopped()) {
+				if (buffer.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	@Override
+	public Result next() throws IOException {
+		while (position >= current.length) {
+			if (exhausted || closed) {
+				return null;
+			}
+
+			Object element = buffer.poll();
+			if (element == null) {
+				if (waits != null) {
+					waits.increment();
+				}
+
+				try {
+					while ((element = buffer.poll(100, TimeUnit.MILLISECONDS)) == null) {
+						// the fetch of a closed client stops without an end
+						if (stopped()) {
+							exhausted = true;
+							throw new IOException("client closed during a prefetch scan");
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+
+			if (element == END) {
+				exhausted = true;
+				return null;
+			}
+
+			if (element instanceof Throwable) {
+				exhausted = true;
+				throw element instanceof IOException ? (IOException) element : new IOException((Throwable) element);
+			}
+
+			current = (Result[]) element;
+			position = 0;
+		}
+
+		Result result = current[position];
+		current[position++] = null;
+		return result;
+	}
+
+	@Override
+	public Result[] next(int nbRows) throws IOException {
+		List<Result> results = new ArrayList<>(nbRows);
+		Result result;
+		while (results.size() < nbRows && (result = next()) != null) {
+			results.add(result);
+		}
+
+		return results.toArray(new Result[results.size()]);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		buffer.clear();
+		current = EMPTY;
+	}
+
+	@Override
+	public Iterator<Result> iterator() {
+		return new Iterator<Result>() {
+			private Result next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = PrefetchScanner.this.next();
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public Result next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				Result rtn = next;
+				next = null;
+				return rtn;
+			}
+		};
+	}
+}
@@ -0,0 +1,81 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+
+import java.io.IOException;
+
+/**
+ * Adds primitive columns to a <code>Put</code> through one scratch buffer, the only allocation per column is
+ * the cell itself. Reuse one encoder per thread with <code>wrap</code>, it is not thread safe.
+ */
+public final class PutEncoder {
+	private final byte[] scratch = new byte[Long.BYTES];
+	private Put put;
+
+	private PutEncoder() {
+	}
+
+	public static final PutEncoder create() {
+		return new PutEncoder();
+	}
+
+	/**
+	 * @param put put to add columns to, with its timestamp
+	 * @return this encoder
+	 */
+	public final PutEncoder wrap(Put put) {
+		this.put = put;
+		return this;
+	}
+
+	public final Put put() {
+		return put;
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, long value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, int value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, short value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, double value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, float value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	public final PutEncoder add(byte[] family, byte[] qualifier, boolean value) {
+		return add(family, qualifier, scratch, 0, HTableModel.writeValue(scratch, 0, value));
+	}
+
+	/**
+	 * Copies <code>length</code> bytes of <code>value</code> from <code>offset</code> into the cell.
+	 *
+	 * @return this encoder
+	 */
+	public final PutEncoder add(byte[] family, byte[] qualifier, byte[] value, int offset, int length) {
+		if (put == null) {
+			throw new IllegalStateException("wrap a put first");
+		}
+
+		byte[] row = put.getRow();
+		try {
+			put.add(new KeyValue(row, 0, row.length, family, 0, family.length, qualifier, 0, qualifier.length,
+				put.getTimeStamp(), KeyValue.Type.Put, value, offset, length));
+		} catch (IOException e) {
+			throw new UnHandledException(e);
+		}
+
+		return this;
+	}
+}
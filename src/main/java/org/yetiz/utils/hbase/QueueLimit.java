@@ -0,0 +1,79 @@
+package org.yetiz.utils.hbase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds of a per-table fast/async write queue.
+ */
+public final class QueueLimit {
+	public static final int DEFAULT_MAX_COUNT = 100000;
+	public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+	public static final long DEFAULT_BLOCK_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+	private int maxCount = DEFAULT_MAX_COUNT;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private OverflowPolicy policy = OverflowPolicy.BLOCK;
+	private long blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+
+	private QueueLimit() {
+	}
+
+	public static final QueueLimit create() {
+		return new QueueLimit();
+	}
+
+	public static final QueueLimit unbounded() {
+		return create()
+			.maxCount(Integer.MAX_VALUE)
+			.maxBytes(Long.MAX_VALUE);
+	}
+
+	public int maxCount() {
+		return maxCount;
+	}
+
+	public QueueLimit maxCount(int maxCount) {
+		if (maxCount <= 0) {
+			throw new IllegalArgumentException("maxCount must be positive");
+		}
+
+		this.maxCount = maxCount;
+		return this;
+	}
+
+	/**
+	 * estimated heap bytes of queued rows, see <code>Mutation.heapSize()</code>
+	 */
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	public QueueLimit maxBytes(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	public OverflowPolicy policy() {
+		return policy;
+	}
+
+	public QueueLimit policy(OverflowPolicy policy) {
+		this.policy = policy;
+		return this;
+	}
+
+	/**
+	 * milliseconds a producer waits for space under <code>OverflowPolicy.BLOCK</code>
+	 */
+	public long blockTimeout() {
+		return blockTimeout;
+	}
+
+	public QueueLimit blockTimeout(long blockTimeout) {
+		this.blockTimeout = blockTimeout;
+		return this;
+	}
+}
@@ -0,0 +1,100 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Increment;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-enqueue rows that failed inside a fast/async batch with exponential backoff and jitter, until
+ * <code>maxAttempts</code> or the per-operation <code>deadline</code> is reached. Non-idempotent
+ * <code>Increment</code> and <code>Append</code> go to the dead letter handler at their first failure.
+ */
+public final class RetryPolicy {
+	public static final int DEFAULT_MAX_ATTEMPTS = 10;
+	public static final long DEFAULT_INITIAL_BACKOFF = 100;
+	public static final long DEFAULT_MAX_BACKOFF = TimeUnit.SECONDS.toMillis(10);
+	public static final long DEFAULT_DEADLINE = TimeUnit.SECONDS.toMillis(60);
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+	private long maxBackoff = DEFAULT_MAX_BACKOFF;
+	private long deadline = DEFAULT_DEADLINE;
+
+	private RetryPolicy() {
+	}
+
+	public static final RetryPolicy create() {
+		return new RetryPolicy();
+	}
+
+	public static final RetryPolicy none() {
+		return create().maxAttempts(0);
+	}
+
+	public int maxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param maxAttempts retries after the first failure, 0 to disable
+	 */
+	public RetryPolicy maxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+
+	public long initialBackoff() {
+		return initialBackoff;
+	}
+
+	public RetryPolicy initialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+		return this;
+	}
+
+	public long maxBackoff() {
+		return maxBackoff;
+	}
+
+	public RetryPolicy maxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+		return this;
+	}
+
+	/**
+	 * milliseconds since the action was queued after which it is not retried anymore
+	 */
+	public long deadline() {
+		return deadline;
+	}
+
+	public RetryPolicy deadline(long deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
+	/**
+	 * <code>Increment</code> and <code>Append</code> are never retried, a timed out attempt may already be
+	 * applied and a resend is a new operation to the server.
+	 *
+	 * @return milliseconds to wait before the next attempt, or -1 when the action should not be retried
+	 */
+	long backoff(ActionPackage aPackage, Throwable error) {
+		if (error instanceof DoNotRetryIOException
+			|| aPackage.action instanceof Increment
+			|| aPackage.action instanceof Append
+			|| aPackage.attempts >= maxAttempts) {
+			return -1;
+		}
+
+		long backoff = Math.min(maxBackoff, initialBackoff << Math.min(aPackage.attempts, 30));
+		backoff = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		if (System.currentTimeMillis() + backoff > aPackage.createdTime + deadline) {
+			return -1;
+		}
+
+		return backoff;
+	}
+}
@@ -0,0 +1,93 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter over the row keys of one table, fed by the writes of this client.
+ * <p>
+ * Rows are never removed, so a deleted row stays a possible hit; <code>mightContain</code> returning
+ * false is only trusted once the filter is <code>ready()</code>.
+ */
+class RowBloomFilter {
+	private static final Hash HASH = Hash.getInstance(Hash.MURMUR_HASH3);
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final LongAdder negatives;
+	private final LongAdder positives;
+	private final LongAdder falsePositives;
+	private volatile boolean ready = false;
+
+	RowBloomFilter(String name, BloomPolicy policy, HBaseMetrics metrics) {
+		double ln2 = Math.log(2);
+		long size = (long) Math.ceil(-policy.expectedRows() * Math.log(policy.falsePositiveRate()) / (ln2 * ln2));
+		this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (size + 63) / 64));
+		this.bitCount = bits.length() * 64L;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / policy.expectedRows() * ln2));
+		this.negatives = metrics.counter(name + ".negatives");
+		this.positives = metrics.counter(name + ".positives");
+		this.falsePositives = metrics.counter(name + ".false_positives");
+		metrics.gauge(name + ".false_positive_ppm", () -> {
+			long total = positives.sum();
+			return total == 0 ? 0 : falsePositives.sum() * 1000000 / total;
+		});
+	}
+
+	void add(byte[] row) {
+		int h1 = HASH.hash(row, 0, row.length, 0);
+		int h2 = HASH.hash(row, 0, row.length, h1);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << (bit & 63);
+			long value;
+			while (((value = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) ;
+		}
+	}
+
+	/**
+	 * @return false when <code>row</code> was definitely never written, counted as a negative
+	 */
+	boolean mightContain(byte[] row) {
+		if (!ready) {
+			return true;
+		}
+
+		int h1 = HASH.hash(row, 0, row.length, 0);
+		int h2 = HASH.hash(row, 0, row.length, h1);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+				negatives.increment();
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * record what the server answered for a row the filter let through, to measure the false positive rate
+	 */
+	void verified(boolean exists) {
+		if (!ready) {
+			return;
+		}
+
+		positives.increment();
+		if (!exists) {
+			falsePositives.increment();
+		}
+	}
+
+	boolean ready() {
+		return ready;
+	}
+
+	void ready(boolean ready) {
+		this.ready = ready;
+	}
+}
@@ -0,0 +1,418 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Consistency;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through client cache of one table, a segmented LRU bounded by estimated heap bytes with a TTL.
+ * <p>
+ * New rows enter the probation segment and move to the protected segment on their second hit;
+ * eviction takes the least recently used probation row first. Rows are spread by hash over independent
+ * segments, each with its own share of <code>maxBytes</code> and its own lock, so concurrent readers of
+ * different rows do not contend. A row is cached per requested shape
+ * (families and columns) and every shape is dropped when the row is written through the same client.
+ * Only plain Gets are cached: latest version, whole time range, strong consistency and no filter;
+ * stale answers of a hedged read are not stored.
+ * <p>
+ * With <code>CachePolicy.offHeapBytes()</code> every loaded result is also kept in an <code>OffHeapStore</code>,
+ * which serves on-heap misses and refills the on-heap segments.
+ */
+class RowCache {
+	private static final int STRIPES = 1024;
+	private static final int MAX_SEGMENTS = 16;
+	private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+	private static final double PROTECTED_RATIO = 0.8;
+	private static final long ENTRY_OVERHEAD = ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE * 4 + 8) +
+		ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE * 2 + ClassSize.ARRAY);
+	private final CachePolicy policy;
+	private final Segment[] segments;
+	private final AtomicLongArray epochs = new AtomicLongArray(STRIPES);
+	private final OffHeapStore offHeap;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	private final LongAdder invalidations;
+
+	RowCache(String name, CachePolicy policy, HBaseMetrics metrics) {
+		this.policy = policy;
+		int count = (int) Math.max(1, Math.min(MAX_SEGMENTS, policy.maxBytes() / MIN_SEGMENT_BYTES));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(policy.maxBytes() / count);
+		}
+
+		this.offHeap = policy.offHeapBytes() > 0 ? new OffHeapStore(name, policy, metrics) : null;
+		this.hits = metrics.counter(name + ".hits");
+		this.misses = metrics.counter(name + ".misses");
+		this.evictions = metrics.counter(name + ".evictions");
+		this.invalidations = metrics.counter(name + ".invalidations");
+		metrics.gauge(name + ".bytes", this::bytes);
+		metrics.gauge(name + ".rows", this::rows);
+	}
+
+	static boolean cacheable(Get get) {
+		TimeRange timeRange = get.getTimeRange();
+		return get.getFilter() == null
+			&& get.getMaxVersions() == 1
+			&& timeRange.getMin() == 0
+			&& timeRange.getMax() == HConstants.LATEST_TIMESTAMP
+			&& get.getConsistency() == Consistency.STRONG
+			&& !get.isCheckExistenceOnly()
+			&& !get.isClosestRowBefore()
+			&& get.getMaxResultsPerColumnFamily() == -1
+			&& get.getRowOffsetPerColumnFamily() == 0;
+	}
+
+	private static String shape(Get get) {
+		if (!get.hasFamilies()) {
+			return "*";
+		}
+
+		StringBuilder builder = new StringBuilder();
+		get.getFamilyMap().forEach((family, qualifiers) -> {
+			builder.append(Bytes.toStringBinary(family)).append(':');
+			if (qualifiers == null || qualifiers.isEmpty()) {
+				builder.append('*');
+			} else {
+				qualifiers.forEach(qualifier -> builder.append(Bytes.toStringBinary(qualifier)).append(','));
+			}
+
+			builder.append(';');
+		});
+		return builder.toString();
+	}
+
+	private static long heapSize(String shape, Result result) {
+		long size = ENTRY_OVERHEAD + ClassSize.align(ClassSize.STRING + ClassSize.ARRAY + shape.length() * 2);
+		if (result.rawCells() != null) {
+			for (Cell cell : result.rawCells()) {
+				size += CellUtil.estimatedHeapSizeOf(cell) + ClassSize.REFERENCE;
+			}
+		}
+
+		return size;
+	}
+
+	Result get(Get get, Function<Get, Result> loader) {
+		if (!cacheable(get)) {
+			return loader.apply(get);
+		}
+
+		String shape = shape(get);
+		long epoch = epoch(get.getRow());
+		Result result = lookup(get.getRow(), shape, epoch);
+		if (result != null) {
+			return result;
+		}
+
+		result = loader.apply(get);
+		store(get.getRow(), shape, result, epoch);
+		return result;
+	}
+
+	Result[] get(List<Get> gets, Function<List<Get>, Result[]> loader) {
+		Result[] results = new Result[gets.size()];
+		String[] shapes = new String[gets.size()];
+		long[] epochs = new long[gets.size()];
+		List<Get> missed = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		for (int i = 0; i < gets.size(); i++) {
+			Get get = gets.get(i);
+			if (cacheable(get)) {
+				shapes[i] = shape(get);
+				epochs[i] = epoch(get.getRow());
+				results[i] = lookup(get.getRow(), shapes[i], epochs[i]);
+			}
+
+			if (results[i] == null) {
+				missed.add(get);
+				indexes.add(i);
+			}
+		}
+
+		if (missed.isEmpty()) {
+			return results;
+		}
+
+		Result[] loaded = loader.apply(missed);
+		for (int i = 0; i < loaded.length; i++) {
+			int index = indexes.get(i);
+			results[index] = loaded[i];
+			if (shapes[index] != null) {
+				store(gets.get(index).getRow(), shapes[index], loaded[i], epochs[index]);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * drop every cached shape of <code>row</code>, and keep in-flight reads of it from being stored
+	 */
+	void invalidate(byte[] row) {
+		epochs.incrementAndGet(stripe(row));
+		ByteKey key = new ByteKey(row);
+		if (segment(row).remove(key)) {
+			invalidations.increment();
+		}
+
+		if (offHeap != null) {
+			offHeap.invalidate(key);
+		}
+	}
+
+	private int stripe(byte[] row) {
+		return (Bytes.hashCode(row) & Integer.MAX_VALUE) % STRIPES;
+	}
+
+	private long epoch(byte[] row) {
+		return epochs.get(stripe(row));
+	}
+
+	private Segment segment(byte[] row) {
+		return segments[stripe(row) % segments.length];
+	}
+
+	private Result lookup(byte[] row, String shape, long epoch) {
+		Result result = lookup(row, shape);
+		if (result != null || offHeap == null) {
+			return result;
+		}
+
+		result = offHeap.get(new ByteKey(row), shape);
+		if (result != null) {
+			cache(row, shape, result, epoch);
+		}
+
+		return result;
+	}
+
+	private Result lookup(byte[] row, String shape) {
+		Result result = segment(row).lookup(new ByteKey(row), shape);
+		if (result == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+
+		return result;
+	}
+
+	private void store(byte[] row, String shape, Result result, long epoch) {
+		if (result == null || result.isStale()) {
+			return;
+		}
+
+		if (offHeap != null && epoch(row) == epoch) {
+			offHeap.put(new ByteKey(row), shape, result, System.currentTimeMillis() + policy.ttl());
+			if (epoch(row) != epoch) {
+				offHeap.invalidate(new ByteKey(row));
+			}
+		}
+
+		cache(row, shape, result, epoch);
+	}
+
+	private void cache(byte[] row, String shape, Result result, long epoch) {
+		Segment segment = segment(row);
+		synchronized (segment) {
+			// checked under the segment lock, an invalidation bumps the epoch before it takes the lock
+			if (epoch(row) != epoch) {
+				return;
+			}
+
+			evictions.add(segment.put(new ByteKey(row), shape, result, heapSize(shape, result),
+				System.currentTimeMillis() + policy.ttl()));
+		}
+	}
+
+	/**
+	 * release the off-heap tier, the on-heap segments are left to the garbage collector
+	 */
+	void close() {
+		if (offHeap != null) {
+			offHeap.close();
+		}
+	}
+
+	long bytes() {
+		long rtn = 0;
+		for (Segment segment : segments) {
+			rtn += segment.bytes();
+		}
+
+		return rtn;
+	}
+
+	long rows() {
+		long rtn = 0;
+		for (Segment segment : segments) {
+			rtn += segment.rows();
+		}
+
+		return rtn;
+	}
+
+	/**
+	 * Probation and protected LRU of the rows hashed to it, guarded by its own monitor.
+	 */
+	private static class Segment {
+		private final long maxBytes;
+		private final LinkedHashMap<ByteKey, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<ByteKey, Entry> protect = new LinkedHashMap<>(16, 0.75f, true);
+		private long probationBytes = 0;
+		private long protectBytes = 0;
+
+		Segment(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized Result lookup(ByteKey key, String shape) {
+			Entry entry = probation.get(key);
+			boolean probationary = entry != null;
+			if (entry == null) {
+				entry = protect.get(key);
+			}
+
+			if (entry == null) {
+				return null;
+			}
+
+			long expired = entry.expire(shape);
+			if (probationary) {
+				probationBytes -= expired;
+			} else {
+				protectBytes -= expired;
+			}
+
+			Result result = entry.results.get(shape);
+			if (result != null && probationary) {
+				probation.remove(key);
+				probationBytes -= entry.bytes;
+				protect.put(key, entry);
+				protectBytes += entry.bytes;
+				demote();
+			}
+
+			return result;
+		}
+
+		/**
+		 * @return rows evicted to make room
+		 */
+		synchronized long put(ByteKey key, String shape, Result result, long size, long expireTime) {
+			Entry entry = probation.get(key);
+			if (entry != null) {
+				probationBytes += entry.put(shape, result, size, expireTime);
+			} else if ((entry = protect.get(key)) != null) {
+				protectBytes += entry.put(shape, result, size, expireTime);
+				demote();
+			} else {
+				entry = new Entry();
+				probationBytes += entry.put(shape, result, size, expireTime);
+				probation.put(key, entry);
+			}
+
+			long evicted = 0;
+			while (probationBytes + protectBytes > maxBytes && !(probation.isEmpty() && protect.isEmpty())) {
+				boolean fromProbation = !probation.isEmpty();
+				Iterator<Map.Entry<ByteKey, Entry>> iterator = (fromProbation ? probation : protect).entrySet().iterator();
+				Entry victim = iterator.next().getValue();
+				iterator.remove();
+				if (fromProbation) {
+					probationBytes -= victim.bytes;
+				} else {
+					protectBytes -= victim.bytes;
+				}
+
+				evicted++;
+			}
+
+			return evicted;
+		}
+
+		/**
+		 * @return true when <code>key</code> was cached
+		 */
+		synchronized boolean remove(ByteKey key) {
+			Entry entry = probation.remove(key);
+			if (entry != null) {
+				probationBytes -= entry.bytes;
+			} else if ((entry = protect.remove(key)) != null) {
+				protectBytes -= entry.bytes;
+			}
+
+			return entry != null;
+		}
+
+		/**
+		 * move least recently used protected rows back to probation while the protected segment is over its share
+		 */
+		private void demote() {
+			long protectLimit = (long) (maxBytes * PROTECTED_RATIO);
+			Iterator<Map.Entry<ByteKey, Entry>> iterator = protect.entrySet().iterator();
+			while (protectBytes > protectLimit && iterator.hasNext()) {
+				Map.Entry<ByteKey, Entry> eldest = iterator.next();
+				iterator.remove();
+				protectBytes -= eldest.getValue().bytes;
+				probation.put(eldest.getKey(), eldest.getValue());
+				probationBytes += eldest.getValue().bytes;
+			}
+		}
+
+		synchronized long bytes() {
+			return probationBytes + protectBytes;
+		}
+
+		synchronized long rows() {
+			return probation.size() + protect.size();
+		}
+	}
+
+	private static class Entry {
+		private final HashMap<String, Result> results = new HashMap<>(2);
+		private final HashMap<String, Long> expireTimes = new HashMap<>(2);
+		private final HashMap<String, Long> sizes = new HashMap<>(2);
+		private long bytes = 0;
+
+		/**
+		 * @return bytes released when <code>shape</code> expired
+		 */
+		long expire(String shape) {
+			Long expireTime = expireTimes.get(shape);
+			if (expireTime == null || expireTime >= System.currentTimeMillis()) {
+				return 0;
+			}
+
+			results.remove(shape);
+			expireTimes.remove(shape);
+			long size = sizes.remove(shape);
+			bytes -= size;
+			return size;
+		}
+
+		/**
+		 * @return bytes added
+		 */
+		long put(String shape, Result result, long size, long expireTime) {
+			Long previous = sizes.put(shape, size);
+			results.put(shape, result);
+			expireTimes.put(shape, expireTime);
+			long delta = size - (previous == null ? 0 : previous);
+			bytes += delta;
+			return delta;
+		}
+	}
+}
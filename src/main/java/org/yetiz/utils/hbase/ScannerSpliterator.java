@@ -0,0 +1,54 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull rows from a <code>ResultScanner</code> one at a time and convert each only when the stream asks
+ * for it; the scanner is closed when it runs out of rows or fails.
+ */
+class ScannerSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+	private final ResultScanner scanner;
+	private final Function<Result, T> converter;
+
+	ScannerSpliterator(ResultScanner scanner, Function<Result, T> converter) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		this.scanner = scanner;
+		this.converter = converter;
+	}
+
+	/**
+	 * @return lazy stream of <code>scanner</code>, closed with the stream and after any terminal operation
+	 */
+	static <T> Stream<T> stream(ResultScanner scanner, Function<Result, T> converter) {
+		return new ClosingStream<>(StreamSupport.stream(new ScannerSpliterator<>(scanner, converter), false)
+			.onClose(scanner::close));
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		Result result;
+		try {
+			result = scanner.next();
+		} catch (Throwable throwable) {
+			scanner.close();
+			throw new UnHandledException(throwable);
+		}
+
+		if (result == null) {
+			scanner.close();
+			return false;
+		}
+
+		action.accept(converter.apply(result));
+		return true;
+	}
+}
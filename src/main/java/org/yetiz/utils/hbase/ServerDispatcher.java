@@ -0,0 +1,195 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+import org.yetiz.utils.hbase.exception.UnHandledException;
+import org.yetiz.utils.hbase.exception.YHBaseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Split a drained batch by hosting region server and run one sub-batch per server concurrently,
+ * so a slow server only delays its own rows.
+ * <p>
+ * Every server has a lane of at most <code>maxInFlightPerServer</code> running sub-batches, a sub-batch
+ * is handed to the executor only once it holds a permit of its lane and otherwise waits in the lane, so
+ * sub-batches of a slow server never occupy executor threads while healthy servers wait behind them.
+ */
+class ServerDispatcher {
+	private static final ServerName UNKNOWN_SERVER = ServerName.valueOf("unknown", 0, 0);
+	private final HBaseClient client;
+	private final ExecutorService executor;
+	private final int maxInFlightPerServer;
+	private final ConcurrentHashMap<ServerName, Lane> lanes = new ConcurrentHashMap<>();
+
+	ServerDispatcher(HBaseClient client, ExecutorService executor, int maxInFlightPerServer) {
+		this.client = client;
+		this.executor = executor;
+		this.maxInFlightPerServer = Math.max(1, maxInFlightPerServer);
+	}
+
+	/**
+	 * Same contract as <code>Table.batch</code>, <code>results</code> is filled per row even when an
+	 * exception is thrown.
+	 */
+	void batch(TableName tableName, List<? extends Row> rows, Object[] results) {
+		HashMap<ServerName, List<Integer>> groups = group(tableName, rows);
+		client.metrics().counter("batch.server_groups").add(groups.size());
+		if (groups.size() == 1) {
+			ServerName server = groups.keySet().iterator().next();
+			Lane lane = lane(server);
+			if (lane.permits.tryAcquire()) {
+				try {
+					run(tableName, rows, groups.get(server), results);
+				} finally {
+					lane.release();
+				}
+
+				return;
+			}
+		}
+
+		List<Future<?>> futures = new ArrayList<>();
+		groups.forEach((server, indexes) -> {
+			FutureTask<Void> task = new FutureTask<>(() -> run(tableName, rows, indexes, results), null);
+			futures.add(task);
+			lane(server).submit(task);
+		});
+
+		YHBaseException exception = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (exception == null) {
+					exception = convertedException(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UnHandledException(e);
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private Lane lane(ServerName server) {
+		return lanes.computeIfAbsent(server, key -> {
+			Lane lane = new Lane();
+			client.metrics().gauge("batch.in_flight." + key.getHostAndPort(),
+				() -> maxInFlightPerServer - lane.permits.availablePermits());
+			client.metrics().gauge("batch.pending." + key.getHostAndPort(), lane.pending::size);
+			return lane;
+		});
+	}
+
+	private HashMap<ServerName, List<Integer>> group(TableName tableName, List<? extends Row> rows) {
+		HashMap<ServerName, List<Integer>> groups = new HashMap<>();
+		try (RegionLocator locator = client.connection().getRegionLocator(tableName.get())) {
+			for (int i = 0; i < rows.size(); i++) {
+				groups.computeIfAbsent(server(locator, rows.get(i)), key -> new ArrayList<>()).add(i);
+			}
+		} catch (Throwable throwable) {
+			groups.clear();
+			List<Integer> all = new ArrayList<>();
+			for (int i = 0; i < rows.size(); i++) {
+				all.add(i);
+			}
+
+			groups.put(UNKNOWN_SERVER, all);
+		}
+
+		return groups;
+	}
+
+	private ServerName server(RegionLocator locator, Row row) {
+		try {
+			HRegionLocation location = locator.getRegionLocation(row.getRow());
+			if (location != null && location.getServerName() != null) {
+				return location.getServerName();
+			}
+		} catch (Throwable throwable) {
+		}
+
+		return UNKNOWN_SERVER;
+	}
+
+	private void run(TableName tableName, List<? extends Row> rows, List<Integer> indexes, Object[] results) {
+		List<Row> subRows = new ArrayList<>(indexes.size());
+		indexes.forEach(index -> subRows.add(rows.get(index)));
+		Object[] subResults = new Object[subRows.size()];
+		try (Table table = client.connection().getTable(tableName.get())) {
+			table.batch(subRows, subResults);
+		} catch (Throwable throwable) {
+			throw convertedException(throwable);
+		} finally {
+			for (int i = 0; i < subResults.length; i++) {
+				results[indexes.get(i)] = subResults[i];
+			}
+		}
+	}
+
+	private YHBaseException convertedException(Throwable throwable) {
+		if (throwable instanceof YHBaseException) {
+			return (YHBaseException) throwable;
+		} else {
+			return new UnHandledException(throwable);
+		}
+	}
+
+	/**
+	 * Sub-batches of one region server, started in submission order as permits free up.
+	 */
+	private class Lane {
+		private final Semaphore permits = new Semaphore(maxInFlightPerServer);
+		private final ConcurrentLinkedQueue<FutureTask<?>> pending = new ConcurrentLinkedQueue<>();
+
+		void submit(FutureTask<?> task) {
+			pending.add(task);
+			drain();
+		}
+
+		void release() {
+			permits.release();
+			drain();
+		}
+
+		/**
+		 * start pending sub-batches while permits are free, called after every submit and release so a
+		 * sub-batch queued concurrently with a release is never left behind
+		 */
+		private void drain() {
+			while (!pending.isEmpty() && permits.tryAcquire()) {
+				FutureTask<?> task = pending.poll();
+				if (task == null) {
+					permits.release();
+					continue;
+				}
+
+				try {
+					executor.execute(() -> {
+						try {
+							task.run();
+						} finally {
+							release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					try {
+						task.run();
+					} finally {
+						permits.release();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package org.yetiz.utils.hbase;
+
+import org.yetiz.utils.hbase.exception.QueueFullException;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-table queue of the fast and async workers, bounded by entry count and estimated heap bytes.
+ */
+public class WriteQueue<E> {
+	private final String name;
+	private final QueueLimit limit;
+	private final ToLongFunction<E> sizer;
+	private final Consumer<E> callerRunner;
+	private final Consumer<E> dropper;
+	private final ArrayDeque<E> items = new ArrayDeque<>();
+	private final ArrayDeque<Long> sizes = new ArrayDeque<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final LongAdder accepted;
+	private final LongAdder blocked;
+	private final LongAdder rejected;
+	private final LongAdder dropped;
+	private final LongAdder callerRuns;
+	private final LongAdder requeued;
+	private long bytes = 0;
+
+	/**
+	 * @param name         metric prefix, e.g. <code>fast.table</code>
+	 * @param sizer        heap size estimate of an entry
+	 * @param callerRunner executes an entry for <code>OverflowPolicy.CALLER_RUNS</code>
+	 * @param dropper      notified of every entry evicted by <code>OverflowPolicy.DROP_OLDEST</code>
+	 */
+	public WriteQueue(String name,
+	                  QueueLimit limit,
+	                  HBaseMetrics metrics,
+	                  ToLongFunction<E> sizer,
+	                  Consumer<E> callerRunner,
+	                  Consumer<E> dropper) {
+		this.name = name;
+		this.limit = limit;
+		this.sizer = sizer;
+		this.callerRunner = callerRunner;
+		this.dropper = dropper;
+		this.accepted = metrics.counter(name + ".accepted");
+		this.blocked = metrics.counter(name + ".blocked");
+		this.rejected = metrics.counter(name + ".rejected");
+		this.dropped = metrics.counter(name + ".dropped");
+		this.callerRuns = metrics.counter(name + ".caller_runs");
+		this.requeued = metrics.counter(name + ".requeued");
+		metrics.gauge(name + ".size", this::size);
+		metrics.gauge(name + ".bytes", this::bytes);
+	}
+
+	public QueueLimit limit() {
+		return limit;
+	}
+
+	/**
+	 * Queue <code>entry</code> following <code>QueueLimit.policy()</code> when the queue is full.
+	 *
+	 * @throws QueueFullException when the entry is rejected
+	 */
+	public void offer(E entry) {
+		add(entry, true, accepted);
+	}
+
+	/**
+	 * Put back an entry that was already admitted once, e.g. a retry. It counts against the limit and follows
+	 * <code>QueueLimit.policy()</code> like <code>offer</code>, except that <code>BLOCK</code> does not wait and
+	 * <code>CALLER_RUNS</code> rejects, the thread putting it back is not the producer of the entry.
+	 *
+	 * @return false when the queue is full under <code>BLOCK</code>, try again later
+	 * @throws QueueFullException when the entry is rejected
+	 */
+	public boolean requeue(E entry) {
+		return add(entry, false, requeued);
+	}
+
+	/**
+	 * @param caller true when the producer of the entry is calling, it may wait or run the entry itself
+	 */
+	private boolean add(E entry, boolean caller, LongAdder counter) {
+		long size = sizer.applyAsLong(entry);
+		lock.lock();
+		try {
+			if (!fits(size)) {
+				switch (limit.policy()) {
+					case REJECT:
+						rejected.increment();
+						throw new QueueFullException(name + " is full");
+					case CALLER_RUNS:
+						if (!caller) {
+							rejected.increment();
+							throw new QueueFullException(name + " is full");
+						}
+
+						callerRuns.increment();
+						lock.unlock();
+						try {
+							callerRunner.accept(entry);
+						} finally {
+							lock.lock();
+						}
+						return true;
+					case DROP_OLDEST:
+						while (!fits(size)) {
+							E oldest = removeFirst();
+							dropped.increment();
+							lock.unlock();
+							try {
+								dropper.accept(oldest);
+							} finally {
+								lock.lock();
+							}
+						}
+						break;
+					case BLOCK:
+					default:
+						if (!caller) {
+							return false;
+						}
+
+						blocked.increment();
+						long nanos = TimeUnit.MILLISECONDS.toNanos(limit.blockTimeout());
+						while (!fits(size)) {
+							if (nanos <= 0) {
+								rejected.increment();
+								throw new QueueFullException(name + " is full");
+							}
+
+							try {
+								nanos = notFull.awaitNanos(nanos);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								rejected.increment();
+								throw new QueueFullException(e);
+							}
+						}
+				}
+			}
+
+			items.addLast(entry);
+			sizes.addLast(size);
+			bytes += size;
+			counter.increment();
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void addAll(Collection<? extends E> entries) {
+		entries.forEach(this::offer);
+	}
+
+	/**
+	 * an oversized entry is still admitted into an empty queue, otherwise it could never be written
+	 */
+	private boolean fits(long size) {
+		if (items.isEmpty()) {
+			return true;
+		}
+
+		return items.size() < limit.maxCount() && bytes + size <= limit.maxBytes();
+	}
+
+	private E removeFirst() {
+		E entry = items.pollFirst();
+		if (entry != null) {
+			bytes -= sizes.pollFirst();
+			notFull.signalAll();
+		}
+
+		return entry;
+	}
+
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (items.isEmpty()) {
+				if (nanos <= 0) {
+					return null;
+				}
+
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			return removeFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait up to <code>idleTimeout</code> for a first entry, then keep collecting into <code>batch</code>
+	 * until <code>policy</code> cuts it.
+	 *
+	 * @return true when the batch was cut by its row or byte limit, false when by linger or idle timeout
+	 */
+	public boolean collect(List<? super E> batch, FlushPolicy policy, long idleTimeout, TimeUnit unit)
+		throws InterruptedException {
+		long nanos = unit.toNanos(idleTimeout);
+		lock.lockInterruptibly();
+		try {
+			while (items.isEmpty()) {
+				if (nanos <= 0) {
+					return false;
+				}
+
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			long lingerNanos = TimeUnit.MILLISECONDS.toNanos(policy.linger());
+			long deadline = System.nanoTime() + lingerNanos;
+			long batchBytes = 0;
+			while (true) {
+				while (!items.isEmpty() && batch.size() < policy.maxRows()) {
+					long size = sizes.peekFirst();
+					if (!batch.isEmpty() && batchBytes + size > policy.maxBytes()) {
+						return true;
+					}
+
+					batch.add(removeFirst());
+					batchBytes += size;
+				}
+
+				if (batch.size() >= policy.maxRows() || batchBytes >= policy.maxBytes()) {
+					return true;
+				}
+
+				lingerNanos = deadline - System.nanoTime();
+				if (lingerNanos <= 0) {
+					return false;
+				}
+
+				notEmpty.awaitNanos(lingerNanos);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		lock.lock();
+		try {
+			int count = 0;
+			while (count < maxElements && !items.isEmpty()) {
+				collection.add(removeFirst());
+				count++;
+			}
+
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long bytes() {
+		lock.lock();
+		try {
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package org.yetiz.utils.hbase.exception;
+
+public class OperationTimeoutException extends YHBaseException {
+	public OperationTimeoutException() {
+	}
+
+	public OperationTimeoutException(String message) {
+		super(message);
+	}
+
+	public OperationTimeoutException(Throwable cause) {
+		super(cause);
+	}
+}
@@ -0,0 +1,14 @@
+package org.yetiz.utils.hbase.exception;
+
+public class QueueFullException extends YHBaseException {
+	public QueueFullException() {
+	}
+
+	public QueueFullException(String message) {
+		super(message);
+	}
+
+	public QueueFullException(Throwable cause) {
+		super(cause);
+	}
+}
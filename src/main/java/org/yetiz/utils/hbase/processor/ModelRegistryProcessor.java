@@ -0,0 +1,98 @@
+package org.yetiz.utils.hbase.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Write the binary names of every concrete <code>HTableModel</code> compiled in a module to
+ * <code>META-INF/hbase-utils/models</code>, which <code>HTableModel</code> loads at startup instead of
+ * scanning the classpath.
+ * <p>
+ * Registered through <code>META-INF/services</code>, so it runs for every module compiled against this
+ * library; entries of an earlier incremental compilation are kept.
+ */
+@SupportedAnnotationTypes("*")
+public class ModelRegistryProcessor extends AbstractProcessor {
+	public static final String REGISTRY = "META-INF/hbase-utils/models";
+	private static final String MODEL = "org.yetiz.utils.hbase.HTableModel";
+	private final TreeSet<String> models = new TreeSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement model = processingEnv.getElementUtils().getTypeElement(MODEL);
+		if (model == null) {
+			return false;
+		}
+
+		if (!roundEnv.processingOver()) {
+			roundEnv.getRootElements().forEach(element -> collect(element, model));
+			return false;
+		}
+
+		if (!models.isEmpty()) {
+			write();
+		}
+
+		return false;
+	}
+
+	private void collect(Element element, TypeElement model) {
+		if (element.getKind() != ElementKind.CLASS) {
+			return;
+		}
+
+		TypeElement type = (TypeElement) element;
+		if (!type.getModifiers().contains(Modifier.ABSTRACT)
+			&& processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()),
+			processingEnv.getTypeUtils().erasure(model.asType()))
+			&& !type.getQualifiedName().contentEquals(MODEL)) {
+			models.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+		}
+
+		type.getEnclosedElements().forEach(enclosed -> collect(enclosed, model));
+	}
+
+	private void write() {
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY);
+			try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+				reader.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(models::add);
+			}
+		} catch (Throwable throwable) {
+		}
+
+		try {
+			FileObject registry = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY);
+			try (Writer writer = registry.openWriter()) {
+				for (String name : models) {
+					writer.write(name);
+					writer.write('\n');
+				}
+			}
+		} catch (Throwable throwable) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+				"can not write " + REGISTRY + ", " + throwable);
+		}
+	}
+}
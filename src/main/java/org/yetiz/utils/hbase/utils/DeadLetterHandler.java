@@ -0,0 +1,12 @@
+package org.yetiz.utils.hbase.utils;
+
+import org.apache.hadoop.hbase.client.Row;
+import org.yetiz.utils.hbase.TableName;
+
+/**
+ * Receives fast/async rows that failed permanently.
+ */
+public interface DeadLetterHandler {
+
+	void deadLetter(TableName tableName, Row action, Throwable cause);
+}
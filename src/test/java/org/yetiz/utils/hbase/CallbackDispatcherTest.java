@@ -0,0 +1,96 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class CallbackDispatcherTest {
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	private final HBaseMetrics metrics = new HBaseMetrics();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static void await(CountDownLatch latch) throws InterruptedException {
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void lanesKeepTheOrderOfARow() throws Exception {
+		CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 4, metrics);
+		List<List<Integer>> delivered = new ArrayList<>();
+		for (int row = 0; row < 10; row++) {
+			delivered.add(Collections.synchronizedList(new ArrayList<>()));
+		}
+
+		CountDownLatch done = new CountDownLatch(1000);
+		for (int i = 0; i < 1000; i++) {
+			int row = i % 10;
+			int sequence = i;
+			dispatcher.dispatch(Bytes.toBytes("row" + row), () -> {
+				delivered.get(row).add(sequence);
+				done.countDown();
+			});
+		}
+
+		await(done);
+		for (List<Integer> sequences : delivered) {
+			assertEquals(100, sequences.size());
+			for (int i = 1; i < sequences.size(); i++) {
+				assertTrue(sequences.get(i - 1) < sequences.get(i));
+			}
+		}
+
+		assertEquals(1000, metrics.value("callbacks.dispatched"));
+	}
+
+	@Test
+	public void rejectedLaneRecovers() throws Exception {
+		Semaphore accepted = new Semaphore(0);
+		Executor rejecting = task -> {
+			if (!accepted.tryAcquire()) {
+				throw new RejectedExecutionException("full");
+			}
+
+			executor.execute(task);
+		};
+		CallbackDispatcher dispatcher = new CallbackDispatcher(rejecting, 1, metrics);
+		List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+		try {
+			dispatcher.dispatch(Bytes.toBytes("row"), () -> delivered.add("rejected"));
+			fail();
+		} catch (RejectedExecutionException e) {
+		}
+
+		assertEquals(0, metrics.value("callbacks.pending"));
+		accepted.release();
+		CountDownLatch done = new CountDownLatch(1);
+		dispatcher.dispatch(Bytes.toBytes("row"), () -> {
+			delivered.add("accepted");
+			done.countDown();
+		});
+		await(done);
+		assertEquals(Collections.singletonList("accepted"), delivered);
+	}
+
+	@Test
+	public void countsFailedCallbacks() throws Exception {
+		CallbackDispatcher dispatcher = new CallbackDispatcher(executor, 1, metrics);
+		CountDownLatch done = new CountDownLatch(1);
+		dispatcher.dispatch(Bytes.toBytes("row"), () -> {
+			throw new IllegalStateException("callback");
+		});
+		dispatcher.dispatch(Bytes.toBytes("row"), done::countDown);
+		await(done);
+		assertEquals(1, metrics.value("callbacks.failures"));
+	}
+}
@@ -0,0 +1,55 @@
+package org.yetiz.utils.hbase;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ClosingStreamTest {
+	private final AtomicInteger closes = new AtomicInteger();
+
+	private Stream<Integer> endless() {
+		return new ClosingStream<>(Stream.iterate(1, i -> i + 1).onClose(closes::incrementAndGet));
+	}
+
+	@Test
+	public void closesOnShortCircuit() {
+		assertEquals(Optional.of(3), endless().filter(i -> i > 2).findFirst());
+		assertTrue(endless().anyMatch(i -> i == 5));
+		assertEquals(3, endless().limit(3).collect(Collectors.toList()).size());
+		assertEquals(3, closes.get());
+	}
+
+	@Test
+	public void closesOnPrimitiveTerminals() {
+		assertTrue(endless().mapToLong(i -> i).anyMatch(i -> i == 5));
+		assertEquals(6, endless().mapToInt(i -> i).limit(3).sum());
+		assertEquals(2.0, endless().mapToDouble(i -> i).skip(1).findFirst().getAsDouble(), 0);
+		assertEquals(3, endless().flatMapToInt(i -> Stream.of(i, i).mapToInt(j -> j)).boxed().limit(3).count());
+		assertEquals(1L, (long) endless().mapToInt(i -> i).asLongStream().mapToObj(i -> i).findAny().get());
+		assertEquals(5, closes.get());
+	}
+
+	@Test
+	public void closesOnFailure() {
+		try {
+			endless().forEach(i -> {
+				throw new IllegalStateException();
+			});
+			fail();
+		} catch (IllegalStateException e) {
+		}
+
+		assertEquals(1, closes.get());
+	}
+
+	@Test
+	public void handsIteratorOver() {
+		endless().iterator().next();
+		assertEquals(0, closes.get());
+	}
+}
@@ -0,0 +1,60 @@
+package org.yetiz.utils.hbase;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyControllerTest {
+	@Test
+	public void acquiresUpToLimit() {
+		ConcurrencyController controller = new ConcurrencyController(2, 8);
+		assertTrue(controller.tryAcquire());
+		assertTrue(controller.tryAcquire());
+		assertFalse(controller.tryAcquire());
+		controller.release();
+		assertTrue(controller.tryAcquire());
+		assertEquals(2, controller.inFlight());
+	}
+
+	@Test
+	public void growsAdditively() {
+		ConcurrencyController controller = new ConcurrencyController(1, 8);
+		controller.sample(100);
+		controller.sample(100);
+		assertEquals(2, controller.limit());
+		controller.sample(100);
+		assertEquals(2, controller.limit());
+		controller.sample(100);
+		assertEquals(3, controller.limit());
+	}
+
+	@Test
+	public void shrinksMultiplicatively() {
+		ConcurrencyController controller = new ConcurrencyController(1, 64);
+		controller.sample(100);
+		for (int i = 0; i < 100 && controller.limit() < 8; i++) {
+			controller.sample(100);
+		}
+
+		assertEquals(8, controller.limit());
+		controller.sample(1000);
+		assertEquals(4, controller.limit());
+		controller.sample(1000);
+		controller.sample(1000);
+		controller.sample(1000);
+		assertEquals(1, controller.limit());
+	}
+
+	@Test
+	public void staysWithinBounds() {
+		ConcurrencyController controller = new ConcurrencyController(2, 3);
+		controller.sample(100);
+		for (int i = 0; i < 100; i++) {
+			controller.sample(100);
+		}
+
+		assertEquals(3, controller.limit());
+		controller.sample(10000);
+		assertEquals(2, controller.limit());
+	}
+}
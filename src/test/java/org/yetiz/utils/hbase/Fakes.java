@@ -0,0 +1,55 @@
+package org.yetiz.utils.hbase;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Proxy fakes of the HBase client interfaces; a method the handler does not answer returns null, false or 0.
+ */
+final class Fakes {
+	private Fakes() {
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T of(Class<T> type, Handler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return type.getSimpleName() + "@fake";
+				}
+			}
+
+			Object rtn;
+			try {
+				rtn = handler.invoke(method.getName(), args == null ? new Object[0] : args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			return rtn == null ? defaultValue(method) : rtn;
+		});
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == int.class) {
+			return 0;
+		}
+
+		return null;
+	}
+
+	interface Handler {
+		Object invoke(String method, Object[] args) throws Throwable;
+	}
+}
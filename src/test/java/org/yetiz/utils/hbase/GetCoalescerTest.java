@@ -0,0 +1,76 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GetCoalescerTest {
+	private static final byte[] ROW = Bytes.toBytes("row");
+	private static final byte[] A = Bytes.toBytes("a");
+	private static final byte[] B = Bytes.toBytes("b");
+	private final HAsyncTable table = new HAsyncTable(null);
+
+	private HAsyncTable.AsyncPackage asyncPackage(Get get) {
+		return table.new AsyncPackage(get, null);
+	}
+
+	private static KeyValue cell(byte[] family, String qualifier) {
+		return new KeyValue(ROW, family, Bytes.toBytes(qualifier), Bytes.toBytes(qualifier));
+	}
+
+	@Test
+	public void mergesGetsOfTheSameRow() {
+		List<GetCoalescer.Group> groups = GetCoalescer.group(Arrays.asList(
+			asyncPackage(new Get(ROW).addColumn(A, Bytes.toBytes("x"))),
+			asyncPackage(new Get(Bytes.toBytes("other"))),
+			asyncPackage(new Get(ROW).addColumn(A, Bytes.toBytes("y")))));
+		assertEquals(2, groups.size());
+		assertEquals(2, groups.get(0).members.size());
+		Get merged = (Get) groups.get(0).action.action;
+		assertEquals(2, merged.getFamilyMap().get(A).size());
+		assertSame(groups.get(1).first(), groups.get(1).action);
+	}
+
+	@Test
+	public void wholeFamilyAbsorbsColumns() {
+		List<GetCoalescer.Group> groups = GetCoalescer.group(Arrays.asList(
+			asyncPackage(new Get(ROW).addColumn(A, Bytes.toBytes("x"))),
+			asyncPackage(new Get(ROW).addFamily(A))));
+		Get merged = (Get) groups.get(0).action.action;
+		assertNull(merged.getFamilyMap().get(A));
+		assertTrue(merged.getFamilyMap().containsKey(A));
+	}
+
+	@Test
+	public void keepsIncompatibleGetsApart() throws Exception {
+		List<GetCoalescer.Group> groups = GetCoalescer.group(Arrays.asList(
+			asyncPackage(new Get(ROW)),
+			asyncPackage(new Get(ROW).setMaxVersions(3)),
+			asyncPackage(new Get(ROW).setFilter(new KeyOnlyFilter()))));
+		assertEquals(3, groups.size());
+	}
+
+	@Test
+	public void projectsWhatEachGetAsked() {
+		Get x = new Get(ROW).addColumn(A, Bytes.toBytes("x"));
+		Get b = new Get(ROW).addFamily(B);
+		Get merged = new Get(ROW).addColumn(A, Bytes.toBytes("x")).addColumn(A, Bytes.toBytes("y")).addFamily(B);
+		Result result = Result.create(new Cell[]{cell(A, "x"), cell(A, "y"), cell(B, "z")});
+		Result projected = GetCoalescer.project(x, merged, result);
+		assertEquals(1, projected.size());
+		assertArrayEquals(Bytes.toBytes("x"), projected.getValue(A, Bytes.toBytes("x")));
+		projected = GetCoalescer.project(b, merged, result);
+		assertEquals(1, projected.size());
+		assertArrayEquals(Bytes.toBytes("z"), projected.getValue(B, Bytes.toBytes("z")));
+		assertSame(result, GetCoalescer.project(new Get(ROW), merged, result));
+	}
+}
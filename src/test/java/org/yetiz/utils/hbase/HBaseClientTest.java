@@ -0,0 +1,162 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HBaseClientTest {
+	private static final TableName TABLE = TableName.valueOf("client_test");
+	private final List<Row> mutated = Collections.synchronizedList(new ArrayList<>());
+	private final List<Row> deadLetters = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger mutateCalls = new AtomicInteger();
+	private volatile boolean mutatorFails = false;
+	private HBaseClient client;
+
+	@After
+	public void tearDown() {
+		if (client != null) {
+			client.close();
+		}
+	}
+
+	private Connection connection() {
+		return Fakes.of(Connection.class, (method, args) -> {
+			switch (method) {
+				case "getBufferedMutator":
+					return mutator();
+				case "getRegionLocator":
+					throw new IOException("no locator");
+				case "getTable":
+					return table();
+				default:
+					return null;
+			}
+		});
+	}
+
+	private Table table() {
+		return Fakes.of(Table.class, (method, args) -> {
+			if (method.equals("batch")) {
+				Object[] results = (Object[]) args[1];
+				for (int i = 0; i < results.length; i++) {
+					results[i] = Result.create(new Cell[0]);
+				}
+			}
+
+			return null;
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private BufferedMutator mutator() {
+		return Fakes.of(BufferedMutator.class, (method, args) -> {
+			if (method.equals("mutate")) {
+				mutateCalls.incrementAndGet();
+				if (mutatorFails) {
+					throw new IOException("mutator refused");
+				}
+
+				mutated.addAll((List<? extends Mutation>) args[0]);
+			}
+
+			return null;
+		});
+	}
+
+	private HBaseClient.Builder builder() {
+		return HBaseClient.Builder.create()
+			.connection(connection())
+			.fastFlushPolicy(FlushPolicy.create().linger(1))
+			.deadLetterHandler((tableName, action, cause) -> deadLetters.add(action));
+	}
+
+	private static void await(List<?> list, int size) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (list.size() < size && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void bufferedMutatorTakesPuts() throws Exception {
+		client = builder()
+			.fastWriteMode(FastWriteMode.BUFFERED_MUTATOR)
+			.build();
+		Put put = new Put(Bytes.toBytes("row")).addColumn(Bytes.toBytes("d"), Bytes.toBytes("q"), Bytes.toBytes(1));
+		client.fast(TABLE).go(put);
+		await(mutated, 1);
+		assertEquals(Collections.singletonList(put), mutated);
+		assertTrue(deadLetters.isEmpty());
+	}
+
+	@Test
+	public void refusedMutationsAreRetriedThenDeadLettered() throws Exception {
+		client = builder()
+			.fastWriteMode(FastWriteMode.BUFFERED_MUTATOR)
+			.retryPolicy(RetryPolicy.create().maxAttempts(2).initialBackoff(10))
+			.build();
+		mutatorFails = true;
+		Put put = new Put(Bytes.toBytes("row")).addColumn(Bytes.toBytes("d"), Bytes.toBytes("q"), Bytes.toBytes(1));
+		client.fast(TABLE).go(put);
+		await(deadLetters, 1);
+		assertEquals(Collections.singletonList(put), deadLetters);
+		assertEquals(3, mutateCalls.get());
+		assertEquals(2, client.metrics().value("fast.client_test.retried"));
+		assertEquals(1, client.metrics().value("fast.client_test.dead_letters"));
+	}
+
+	@Test
+	public void failedAsyncBatchCompletesItsPackages() throws Exception {
+		ExecutorService callbacks = Executors.newSingleThreadExecutor();
+		callbacks.shutdown();
+		client = builder()
+			.asyncFlushPolicy(FlushPolicy.create().linger(1))
+			.callbackExecutor(callbacks)
+			.build();
+		CompletableFuture<Result> future = client.async(TABLE).get(new Get(Bytes.toBytes("row")));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void closeDeadLettersPendingRetries() throws Exception {
+		client = builder()
+			.fastWriteMode(FastWriteMode.BUFFERED_MUTATOR)
+			.retryPolicy(RetryPolicy.create().initialBackoff(TimeUnit.MINUTES.toMillis(1)))
+			.build();
+		mutatorFails = true;
+		Put put = new Put(Bytes.toBytes("row")).addColumn(Bytes.toBytes("d"), Bytes.toBytes("q"), Bytes.toBytes(1));
+		client.fast(TABLE).go(put);
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		while (client.metrics().value("fast.client_test.retried") == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertTrue(deadLetters.isEmpty());
+		client.close();
+		assertEquals(Collections.singletonList(put), deadLetters);
+		assertEquals(1, mutateCalls.get());
+	}
+}
@@ -0,0 +1,78 @@
+package org.yetiz.utils.hbase;
+
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class HTableModelCodecTest {
+	@Test
+	public void encodesLikeByteBuffer() {
+		for (long value : new long[]{0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x0102030405060708L}) {
+			assertArrayEquals(ByteBuffer.allocate(Long.BYTES).putLong(value).array(), HTableModel.byteValue(value));
+			assertEquals(value, HTableModel.longValue(HTableModel.byteValue(value), 0L));
+			assertArrayEquals(HTableModel.byteValue((Object) value), HTableModel.byteValue(value));
+		}
+
+		for (int value : new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+			assertArrayEquals(ByteBuffer.allocate(Integer.BYTES).putInt(value).array(), HTableModel.byteValue(value));
+			assertEquals(value, HTableModel.intValue(HTableModel.byteValue(value), 0));
+		}
+
+		for (double value : new double[]{0, -0.5, Double.MAX_VALUE, Double.NaN}) {
+			assertEquals(value, HTableModel.doubleValue(HTableModel.byteValue(value), 1), 0);
+		}
+
+		for (float value : new float[]{0, -0.5f, Float.MIN_VALUE}) {
+			assertEquals(value, HTableModel.floatValue(HTableModel.byteValue(value), 1), 0);
+		}
+	}
+
+	@Test
+	public void writesAtOffset() {
+		byte[] bytes = new byte[Long.BYTES + Integer.BYTES + Short.BYTES + 1];
+		int offset = HTableModel.writeValue(bytes, 0, 42L);
+		offset = HTableModel.writeValue(bytes, offset, 7);
+		offset = HTableModel.writeValue(bytes, offset, (short) -3);
+		offset = HTableModel.writeValue(bytes, offset, true);
+		assertEquals(bytes.length, offset);
+		assertEquals(42L, HTableModel.longValue(bytes, 0, Long.BYTES));
+		assertEquals(7, HTableModel.intValue(bytes, Long.BYTES, Integer.BYTES));
+		assertEquals(-3, HTableModel.shortValue(bytes, Long.BYTES + Integer.BYTES, Short.BYTES));
+		assertTrue(HTableModel.booleanValue(bytes, bytes.length - 1, 1));
+		assertEquals(-1, bytes[bytes.length - 1]);
+	}
+
+	@Test
+	public void defaultsOnlyWhenAbsent() {
+		assertNull(HTableModel.longValue(null));
+		assertEquals(5L, HTableModel.longValue(null, 5L));
+		assertEquals(5, HTableModel.intValue(null, 5));
+		assertEquals(5, HTableModel.shortValue(null, (short) 5));
+		assertEquals(0.5, HTableModel.doubleValue(null, 0.5), 0);
+		assertEquals(0.5f, HTableModel.floatValue(null, 0.5f), 0);
+		assertTrue(HTableModel.booleanValue(null, true));
+	}
+
+	@Test(expected = BufferUnderflowException.class)
+	public void throwsOnShortLong() {
+		HTableModel.longValue(new byte[Long.BYTES - 1]);
+	}
+
+	@Test(expected = BufferUnderflowException.class)
+	public void throwsOnShortInt() {
+		HTableModel.intValue(new byte[Integer.BYTES - 1], 0);
+	}
+
+	@Test(expected = BufferUnderflowException.class)
+	public void throwsOnShortDouble() {
+		HTableModel.doubleValue(new byte[Long.BYTES], 0, Long.BYTES - 1);
+	}
+
+	@Test(expected = BufferUnderflowException.class)
+	public void throwsOnEmptyBoolean() {
+		HTableModel.booleanValue(new byte[0], false);
+	}
+}
@@ -0,0 +1,61 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.yetiz.utils.hbase.exception.InvalidOperationException;
+
+import java.util.NavigableSet;
+
+import static org.junit.Assert.*;
+
+public class HTableModelProjectTest {
+	private static final TableName TABLE = HTableModel.tableName(ModelAccessorsTest.Sample.class);
+	private static final byte[] D = Bytes.toBytes("d");
+	private static final byte[] E = Bytes.toBytes("e");
+
+	@Test
+	public void projectsEveryDeclaredColumn() {
+		Get get = HTableModel.project(TABLE, new Get(Bytes.toBytes("row")));
+		NavigableSet<byte[]> qualifiers = get.getFamilyMap().get(D);
+		assertTrue(qualifiers.contains(Bytes.toBytes("c")));
+		assertTrue(qualifiers.contains(Bytes.toBytes("s")));
+		assertTrue(qualifiers.contains(Bytes.toBytes("f")));
+		assertTrue(get.getFamilyMap().get(E).contains(Bytes.toBytes("n")));
+	}
+
+	@Test
+	public void projectsTheColumnsOfAccessors() {
+		Get source = new Get(Bytes.toBytes("row"));
+		Get get = HTableModel.project(TABLE, source, "count", "name");
+		assertNotSame(source, get);
+		assertFalse(source.hasFamilies());
+		assertEquals(1, get.getFamilyMap().get(D).size());
+		assertTrue(get.getFamilyMap().get(D).contains(Bytes.toBytes("c")));
+		assertEquals(1, get.getFamilyMap().get(E).size());
+	}
+
+	@Test
+	public void keepsRequestsThatAskForFamilies() {
+		Get get = new Get(Bytes.toBytes("row")).addFamily(D);
+		assertSame(get, HTableModel.project(TABLE, get));
+		assertSame(get, HTableModel.project(TABLE, get, "count"));
+		assertNull(get.getFamilyMap().get(D));
+		Scan scan = new Scan().addFamily(D);
+		assertSame(scan, HTableModel.project(TABLE, scan, "name"));
+	}
+
+	@Test
+	public void projectsScans() {
+		Scan scan = HTableModel.project(TABLE, new Scan().setCaching(7), "flag");
+		assertEquals(7, scan.getCaching());
+		assertEquals(1, scan.getFamilyMap().get(D).size());
+		assertFalse(scan.getFamilyMap().containsKey(E));
+	}
+
+	@Test(expected = InvalidOperationException.class)
+	public void rejectsUnknownAccessors() {
+		HTableModel.project(TABLE, new Get(Bytes.toBytes("row")), "missing");
+	}
+}
@@ -0,0 +1,108 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelAccessorsTest {
+	private static void assertColumns(Sample sample) {
+		sample.score(2.5).flag(true).name("yeti");
+		assertEquals(2, sample.count());
+		assertEquals(2.5, sample.score(), 0);
+		assertTrue(sample.flag());
+		assertEquals("yeti", sample.name());
+	}
+
+	@Test
+	public void generatesSubclass() {
+		Sample sample = HTableModel.newModel(Sample.class);
+		assertNotSame(Sample.class, sample.getClass());
+		assertTrue(sample.getClass().getName().endsWith(ModelAccessors.SUFFIX));
+		assertEquals(HTableModel.tableName(Sample.class), sample.tableName());
+		assertSame(Sample.class, HTableModel.modelType(sample.tableName()));
+	}
+
+	@Test
+	public void generatedAccessorsFindTheirColumn() {
+		assertColumns(HTableModel.newModel(Sample.class));
+	}
+
+	@Test
+	public void newModelsFindTheirColumnOnTheStack() {
+		assertColumns(new Sample());
+	}
+
+	@Test
+	public void wrappedResultsDecodeInPlace() {
+		Put put = new Sample().count(7).flag(true).put(Bytes.toBytes("row"));
+		List<Cell> cells = new ArrayList<>();
+		put.getFamilyCellMap().values().forEach(cells::addAll);
+		cells.sort(KeyValue.COMPARATOR);
+		Sample sample = HTableModel.newWrappedModel(HTableModel.tableName(Sample.class), Result.create(cells));
+		assertEquals(7, sample.count());
+		assertTrue(sample.flag());
+		assertEquals(-1.0, sample.score(), 0);
+		assertNull(sample.name());
+	}
+
+	public static class Sample extends HTableModel<Sample> {
+		@Family(family = "d")
+		@Qualifier(qualifier = "c", description = "count")
+		public Sample count(int count) {
+			return setInt(count);
+		}
+
+		public int count() {
+			return retrieveInt(-1);
+		}
+
+		/**
+		 * delegates to another column accessor before setting its own
+		 */
+		@Family(family = "d")
+		@Qualifier(qualifier = "s", description = "score")
+		public Sample score(double score) {
+			count((int) score);
+			return setValue(score);
+		}
+
+		public double score() {
+			return retrieveDouble(-1);
+		}
+
+		/**
+		 * sets its column through a helper
+		 */
+		@Family(family = "d")
+		@Qualifier(qualifier = "f", description = "flag")
+		public Sample flag(boolean flag) {
+			return flagValue(flag);
+		}
+
+		private Sample flagValue(boolean flag) {
+			return setValue(flag);
+		}
+
+		public boolean flag() {
+			return retrieveBoolean(false);
+		}
+
+		@Family(family = "e")
+		@Qualifier(qualifier = "n", description = "name")
+		public Sample name(String name) {
+			return setValue(name);
+		}
+
+		public String name() {
+			return stringValue(retrieveValue());
+		}
+	}
+}
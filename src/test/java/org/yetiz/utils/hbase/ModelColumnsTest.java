@@ -0,0 +1,87 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class ModelColumnsTest {
+	private static ModelColumns columns() {
+		HashMap<String, Family> families = new HashMap<>();
+		HashMap<String, Qualifier> qualifiers = new HashMap<>();
+		for (Method method : Columns.class.getDeclaredMethods()) {
+			if (method.getAnnotation(Family.class) != null) {
+				families.put(method.getName(), method.getAnnotation(Family.class));
+			}
+
+			if (method.getAnnotation(Qualifier.class) != null) {
+				qualifiers.put(method.getName(), method.getAnnotation(Qualifier.class));
+			}
+		}
+
+		return new ModelColumns(families, qualifiers);
+	}
+
+	private static KeyValue cell(String family, String qualifier) {
+		return new KeyValue(Bytes.toBytes("row"), Bytes.toBytes(family), Bytes.toBytes(qualifier), new byte[0]);
+	}
+
+	@Test
+	public void sortsByFamilyThenQualifier() {
+		ModelColumns columns = columns();
+		assertEquals(4, columns.size());
+		for (int slot = 1; slot < columns.size(); slot++) {
+			int compare = Bytes.compareTo(columns.family(slot - 1), columns.family(slot));
+			assertTrue(compare < 0 || compare == 0
+				&& Bytes.compareTo(columns.qualifier(slot - 1), columns.qualifier(slot)) < 0);
+		}
+	}
+
+	@Test
+	public void findsSlotByAccessor() {
+		ModelColumns columns = columns();
+		for (String accessor : new String[]{"name", "age", "city", "score"}) {
+			assertEquals(accessor, columns.accessor(columns.slot(accessor)));
+		}
+
+		assertEquals(-1, columns.slot("orphan"));
+		assertEquals(-1, columns.slot("missing"));
+	}
+
+	@Test
+	public void findsSlotByCell() {
+		ModelColumns columns = columns();
+		assertEquals(columns.slot("name"), columns.slot(cell("a", "name")));
+		assertEquals(columns.slot("age"), columns.slot(cell("a", "age")));
+		assertEquals(columns.slot("city"), columns.slot(cell("b", "city")));
+		assertEquals(columns.slot("score"), columns.slot(cell("c", "s")));
+		assertEquals(-1, columns.slot(cell("a", "zzz")));
+		assertEquals(-1, columns.slot(cell("b", "name")));
+		assertEquals(-1, columns.slot(cell("0", "age")));
+	}
+
+	private static abstract class Columns {
+		@Family(family = "b")
+		@Qualifier(qualifier = "city", description = "")
+		abstract void city();
+
+		@Family(family = "a")
+		@Qualifier(qualifier = "name", description = "")
+		abstract void name();
+
+		@Family(family = "c")
+		@Qualifier(qualifier = "s", description = "")
+		abstract void score();
+
+		@Family(family = "a")
+		@Qualifier(qualifier = "age", description = "")
+		abstract void age();
+
+		@Qualifier(qualifier = "orphan", description = "")
+		abstract void orphan();
+	}
+}
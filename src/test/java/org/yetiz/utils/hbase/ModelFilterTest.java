@@ -0,0 +1,75 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelFilterTest {
+	private static final byte[] D = Bytes.toBytes("d");
+	private static final byte[] E = Bytes.toBytes("e");
+
+	private static ModelFilter.Column column(String accessor) {
+		return ModelFilter.column(ModelAccessorsTest.Sample.class, accessor);
+	}
+
+	/**
+	 * run the filter over the cells of one row the way a region server does
+	 */
+	private static boolean matches(ModelFilter filter, ModelAccessorsTest.Sample sample) throws Exception {
+		List<Cell> cells = new ArrayList<>();
+		sample.put(Bytes.toBytes("row")).getFamilyCellMap().values().forEach(cells::addAll);
+		cells.sort(KeyValue.COMPARATOR);
+		Filter hbase = filter.toFilter();
+		hbase.reset();
+		for (Cell cell : cells) {
+			if (hbase.filterKeyValue(cell) == Filter.ReturnCode.NEXT_ROW) {
+				return false;
+			}
+		}
+
+		return !hbase.filterRow();
+	}
+
+	@Test
+	public void comparesWithTheWidthOfTheAccessor() throws Exception {
+		ModelAccessorsTest.Sample sample = new ModelAccessorsTest.Sample().count(20);
+		assertTrue(matches(column("count").between(18, 30), sample));
+		assertFalse(matches(column("count").between(21, 30), sample));
+		// setInt stores 4 bytes, 8 byte longs never compare equal
+		assertFalse(matches(column("count").between(18L, 30L), sample));
+	}
+
+	@Test
+	public void combinesPredicates() throws Exception {
+		ModelAccessorsTest.Sample sample = new ModelAccessorsTest.Sample().count(20).name("yeti");
+		assertTrue(matches(column("name").prefix("ye").and(column("count").eq(20)), sample));
+		assertFalse(matches(column("name").prefix("ye").and(column("count").eq(21)), sample));
+		assertTrue(matches(column("name").eq("other").or(column("count").gt(10)), sample));
+		assertTrue(matches(ModelFilter.anyOf(column("name").ne("yeti"), column("count").le(20)), sample));
+	}
+
+	@Test
+	public void missingColumnNeverMatches() throws Exception {
+		ModelAccessorsTest.Sample sample = new ModelAccessorsTest.Sample().count(20);
+		assertFalse(matches(column("name").ne("yeti"), sample));
+	}
+
+	@Test
+	public void fetchesTheColumnsItReads() {
+		Scan scan = column("count").eq(20).applyTo(new Scan().addColumn(E, Bytes.toBytes("n")));
+		assertTrue(scan.getFamilyMap().get(D).contains(Bytes.toBytes("c")));
+		assertNotNull(scan.getFilter());
+		Scan whole = column("count").eq(20).applyTo(new Scan().addFamily(D));
+		assertNull(whole.getFamilyMap().get(D));
+		Scan all = column("count").eq(20).applyTo(new Scan());
+		assertFalse(all.hasFamilies());
+	}
+}
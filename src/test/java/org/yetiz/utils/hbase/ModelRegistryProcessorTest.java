@@ -0,0 +1,83 @@
+package org.yetiz.utils.hbase;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yetiz.utils.hbase.processor.ModelRegistryProcessor;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class ModelRegistryProcessorTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static JavaFileObject source(String name, String code) {
+		return new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + ".java"),
+			JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return code;
+			}
+		};
+	}
+
+	/**
+	 * compile against a stand-in <code>HTableModel</code> so only the processor is exercised
+	 */
+	private List<String> compile(File output, JavaFileObject... sources) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+			Arrays.asList("-proc:only", "-d", output.getPath()), null, Arrays.asList(sources));
+		task.setProcessors(Collections.singletonList(new ModelRegistryProcessor()));
+		assertTrue(task.call());
+		File registry = new File(output, ModelRegistryProcessor.REGISTRY);
+		return registry.exists() ? Files.readAllLines(registry.toPath(), StandardCharsets.UTF_8) : null;
+	}
+
+	private static JavaFileObject model() {
+		return source("org.yetiz.utils.hbase.HTableModel",
+			"package org.yetiz.utils.hbase; public abstract class HTableModel<T extends HTableModel<T>> {}");
+	}
+
+	@Test
+	public void registersConcreteModels() throws Exception {
+		List<String> models = compile(folder.newFolder(), model(),
+			source("m.User", "package m; public class User extends org.yetiz.utils.hbase.HTableModel<User> {"
+				+ " public static class Audit extends org.yetiz.utils.hbase.HTableModel<Audit> {} }"),
+			source("m.Base", "package m; public abstract class Base<T extends Base<T>>"
+				+ " extends org.yetiz.utils.hbase.HTableModel<T> {}"),
+			source("m.Order", "package m; public class Order extends Base<Order> {}"),
+			source("m.Plain", "package m; public class Plain {}"));
+		assertEquals(Arrays.asList("m.Order", "m.User", "m.User$Audit"), models);
+	}
+
+	@Test
+	public void keepsEntriesOfEarlierCompilations() throws Exception {
+		File output = folder.newFolder();
+		File registry = new File(output, ModelRegistryProcessor.REGISTRY);
+		assertTrue(registry.getParentFile().mkdirs());
+		Files.write(registry.toPath(), Collections.singletonList("m.Earlier"), StandardCharsets.UTF_8);
+		List<String> models = compile(output, model(),
+			source("m.User", "package m; public class User extends org.yetiz.utils.hbase.HTableModel<User> {}"));
+		assertEquals(Arrays.asList("m.Earlier", "m.User"), models);
+	}
+
+	@Test
+	public void writesNothingWithoutModels() throws Exception {
+		assertNull(compile(folder.newFolder(), model(), source("m.Plain", "package m; public class Plain {}")));
+	}
+}
@@ -0,0 +1,42 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MultiGetResultTest {
+	private final List<Get> gets = Arrays.asList(new Get(Bytes.toBytes("a")), new Get(Bytes.toBytes("b")),
+		new Get(Bytes.toBytes("c")));
+
+	@Test
+	public void keepsAnswersOfPartialFailure() {
+		MultiGetResult<String> result = new MultiGetResult<>(gets, true);
+		result.succeed(0, "a");
+		result.fail(1, new IOException());
+		result.succeed(2, "c");
+		assertFalse(result.complete());
+		assertEquals(3, result.size());
+		assertEquals(2, result.succeeded());
+		assertEquals(Arrays.asList("a", null, "c"), result.results());
+		assertNull(result.error(0));
+		assertTrue(result.error(1) instanceof IOException);
+		assertEquals(1, result.errors().size());
+		assertSame(gets.get(1), result.get(1));
+	}
+
+	@Test
+	public void retainsNothingWhenStreamed() {
+		MultiGetResult<String> result = new MultiGetResult<>(gets, false);
+		gets.forEach(get -> result.succeed(gets.indexOf(get), "x"));
+		assertTrue(result.complete());
+		assertEquals(3, result.succeeded());
+		assertNull(result.result(0));
+		assertTrue(result.results().isEmpty());
+	}
+}
@@ -0,0 +1,93 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MutationMergerTest {
+	private static final byte[] FAMILY = Bytes.toBytes("d");
+	private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+	private static ActionPackage put(String row, String value) {
+		return new ActionPackage(new Put(Bytes.toBytes(row)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(value)));
+	}
+
+	private static List<ActionPackage> packages(ActionPackage... packages) {
+		return new ArrayList<>(Arrays.asList(packages));
+	}
+
+	@Test
+	public void leavesDistinctRowsAlone() {
+		List<ActionPackage> packages = packages(put("a", "1"), put("b", "2"));
+		assertSame(packages, MutationMerger.merge(packages));
+	}
+
+	@Test
+	public void lastPutWins() {
+		List<ActionPackage> merged = MutationMerger.merge(packages(put("a", "1"), put("b", "2"), put("a", "3")));
+		assertEquals(2, merged.size());
+		Put put = (Put) merged.get(0).action;
+		assertEquals(1, put.size());
+		assertArrayEquals(Bytes.toBytes("3"), put.get(FAMILY, QUALIFIER).get(0).getValue());
+	}
+
+	@Test
+	public void dropsPutCellsMaskedByLaterDelete() {
+		ActionPackage first = put("a", "1");
+		((Put) first.action).addColumn(FAMILY, Bytes.toBytes("other"), Bytes.toBytes("2"));
+		ActionPackage delete = new ActionPackage(new Delete(Bytes.toBytes("a")).addColumns(FAMILY, QUALIFIER));
+		List<ActionPackage> merged = MutationMerger.merge(packages(first, delete));
+		assertEquals(2, merged.size());
+		Put put = (Put) merged.get(0).action;
+		assertFalse(put.has(FAMILY, QUALIFIER));
+		assertTrue(put.has(FAMILY, Bytes.toBytes("other")));
+		assertSame(delete.action, merged.get(1).action);
+	}
+
+	@Test
+	public void dropsPutMaskedByLaterRowDelete() {
+		ActionPackage delete = new ActionPackage(new Delete(Bytes.toBytes("a")));
+		List<ActionPackage> merged = MutationMerger.merge(packages(put("a", "1"), put("a", "2"), delete));
+		assertEquals(1, merged.size());
+		assertSame(delete.action, merged.get(0).action);
+	}
+
+	@Test
+	public void neverEmitsRowMutations() {
+		ActionPackage delete = new ActionPackage(new Delete(Bytes.toBytes("a")).addFamily(FAMILY));
+		List<ActionPackage> merged = MutationMerger.merge(packages(put("a", "1"), delete, put("a", "2")));
+		assertTrue(merged.stream().noneMatch(aPackage -> aPackage.action instanceof RowMutations));
+		assertEquals(2, merged.size());
+		assertTrue(merged.get(0).action instanceof Delete);
+		assertTrue(merged.get(1).action instanceof Put);
+	}
+
+	@Test
+	public void keepsDeleteOfOneVersionApart() {
+		ActionPackage delete = new ActionPackage(new Delete(Bytes.toBytes("a")).addColumn(FAMILY, QUALIFIER));
+		List<ActionPackage> merged = MutationMerger.merge(packages(put("a", "1"), delete));
+		assertEquals(2, merged.size());
+		assertTrue(merged.get(0).action instanceof Put);
+		assertTrue(merged.get(1).action instanceof Delete);
+	}
+
+	@Test
+	public void leavesNonIdempotentRowsAlone() {
+		ActionPackage increment = new ActionPackage(new Increment(Bytes.toBytes("a")).addColumn(FAMILY, QUALIFIER, 1));
+		List<ActionPackage> merged = MutationMerger.merge(packages(put("a", "1"), increment, put("a", "2")));
+		assertEquals(3, merged.size());
+	}
+
+	@Test
+	public void leavesMutationsWithAttributesAlone() {
+		ActionPackage first = put("a", "1");
+		((Put) first.action).setAttribute("k", new byte[]{1});
+		assertEquals(2, MutationMerger.merge(packages(first, put("a", "2"))).size());
+	}
+}
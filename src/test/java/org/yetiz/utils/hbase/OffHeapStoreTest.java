@@ -0,0 +1,106 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OffHeapStoreTest {
+	private static final long EXPIRE = Long.MAX_VALUE;
+	private final OffHeapStore store = new OffHeapStore("offheap",
+		CachePolicy.create().offHeapBytes(16 * 4096).offHeapSlabSize(4096), new HBaseMetrics());
+
+	private static Result result(String row, String value) {
+		return Result.create(new Cell[]{new KeyValue(Bytes.toBytes(row), Bytes.toBytes("d"), Bytes.toBytes("q"),
+			Bytes.toBytes(value))});
+	}
+
+	private static ByteKey key(String row) {
+		return new ByteKey(Bytes.toBytes(row));
+	}
+
+	@After
+	public void close() {
+		store.close();
+	}
+
+	@Test
+	public void indexMatchesHashMap() {
+		OffHeapStore.Index index = new OffHeapStore.Index(16);
+		HashMap<Long, Long> expected = new HashMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 100000; i++) {
+			long key = random.nextInt(2000) + 1;
+			switch (random.nextInt(3)) {
+				case 0:
+					index.put(key, i);
+					expected.put(key, (long) i);
+					break;
+				case 1:
+					assertEquals(expected.remove(key) != null, index.remove(key));
+					break;
+				default:
+					Long value = expected.get(key);
+					assertEquals(value == null ? -1 : value, index.get(key));
+			}
+		}
+
+		assertEquals(expected.size(), index.size());
+	}
+
+	@Test
+	public void keepsShapesApart() {
+		store.put(key("a"), "*", result("a", "whole"), EXPIRE);
+		store.put(key("a"), "d:q,;", result("a", "column"), EXPIRE);
+		assertEquals("whole", Bytes.toString(store.get(key("a"), "*").value()));
+		assertEquals("column", Bytes.toString(store.get(key("a"), "d:q,;").value()));
+		store.put(key("a"), "*", result("a", "newer"), EXPIRE);
+		assertEquals("newer", Bytes.toString(store.get(key("a"), "*").value()));
+	}
+
+	@Test
+	public void invalidatesEveryShape() {
+		store.put(key("a"), "*", result("a", "whole"), EXPIRE);
+		store.put(key("a"), "d:q,;", result("a", "column"), EXPIRE);
+		store.invalidate(key("a"));
+		assertNull(store.get(key("a"), "*"));
+		assertNull(store.get(key("a"), "d:q,;"));
+	}
+
+	@Test
+	public void dropsExpiredResults() {
+		store.put(key("a"), "*", result("a", "old"), System.currentTimeMillis() - 1);
+		assertNull(store.get(key("a"), "*"));
+	}
+
+	@Test
+	public void evictsOldestSlabs() {
+		for (int i = 0; i < 5000; i++) {
+			store.put(key("row" + i), "*", result("row" + i, "value" + i), EXPIRE);
+		}
+
+		assertNull(store.get(key("row0"), "*"));
+		assertEquals("value4999", Bytes.toString(store.get(key("row4999"), "*").value()));
+		for (int i = 0; i < 5000; i++) {
+			Result result = store.get(key("row" + i), "*");
+			if (result != null) {
+				assertEquals("value" + i, Bytes.toString(result.value()));
+			}
+		}
+
+		assertTrue(store.bytes() <= 16 * 4096);
+	}
+
+	@Test
+	public void hashIsNeverZero() {
+		assertNotEquals(0, OffHeapStore.hash(new byte[0]));
+		assertEquals(OffHeapStore.hash(Bytes.toBytes("a")), OffHeapStore.hash(Bytes.toBytes("a")));
+	}
+}
@@ -0,0 +1,124 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.After;
+import org.junit.Test;
+import org.yetiz.utils.hbase.exception.InvalidOperationException;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ParallelScannerTest {
+	private static final TableName TABLE = TableName.valueOf("parallel_scan_test");
+	private static final byte[][] STARTS = {HConstants.EMPTY_START_ROW, Bytes.toBytes("b"), Bytes.toBytes("d")};
+	private static final byte[][] STOPS = {Bytes.toBytes("b"), Bytes.toBytes("d"), HConstants.EMPTY_END_ROW};
+	private final TreeSet<String> rows = new TreeSet<>(Arrays.asList("a", "b", "c", "d", "e"));
+	private final List<String> scans = Collections.synchronizedList(new ArrayList<>());
+	private HBaseClient client;
+
+	@After
+	public void tearDown() {
+		if (client != null) {
+			client.close();
+		}
+	}
+
+	private HBaseTable table() {
+		Connection connection = Fakes.of(Connection.class, (method, args) -> {
+			switch (method) {
+				case "getRegionLocator":
+					return Fakes.of(RegionLocator.class, (locatorMethod, locatorArgs) ->
+						locatorMethod.equals("getStartEndKeys") ? new Pair<>(STARTS, STOPS) : null);
+				case "getTable":
+					return Fakes.of(Table.class, (tableMethod, tableArgs) ->
+						tableMethod.equals("getScanner") ? scanner((Scan) tableArgs[0]) : null);
+				default:
+					return null;
+			}
+		});
+		client = HBaseClient.Builder.create().connection(connection).build();
+		return client.table(TABLE);
+	}
+
+	private ResultScanner scanner(Scan scan) {
+		String start = Bytes.toString(scan.getStartRow());
+		String stop = Bytes.toString(scan.getStopRow());
+		scans.add(start + "-" + stop);
+		List<Result> results = rows.stream()
+			.filter(row -> row.compareTo(start) >= 0 && (stop.isEmpty() || row.compareTo(stop) < 0))
+			.map(row -> Result.create(new Cell[]{
+				new KeyValue(Bytes.toBytes(row), Bytes.toBytes("d"), Bytes.toBytes("q"), Bytes.toBytes(row))}))
+			.collect(Collectors.toList());
+		return Fakes.of(ResultScanner.class, (method, args) ->
+			method.equals("iterator") ? results.iterator() : null);
+	}
+
+	private static List<String> keys(Stream<Result> stream) {
+		try (Stream<Result> results = stream) {
+			return results.map(result -> Bytes.toString(result.getRow())).collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void splitsAtRegionBoundaries() {
+		List<String> keys = keys(table().parallelScan(
+			new Scan().setStartRow(Bytes.toBytes("bb")).setStopRow(Bytes.toBytes("e")), 4, true));
+		assertEquals(Arrays.asList("c", "d"), keys);
+		assertEquals(new HashSet<>(Arrays.asList("bb-d", "d-e")), new HashSet<>(scans));
+		assertEquals(2, client.metrics().value("scan.parallel.ranges"));
+	}
+
+	@Test
+	public void orderedScanKeepsKeyOrder() {
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), keys(table().parallelScan(new Scan(), 2, true)));
+		assertEquals(3, scans.size());
+	}
+
+	@Test
+	public void unorderedScanReadsEveryRange() {
+		List<String> keys = keys(table().parallelScan(new Scan(), 3, false));
+		Collections.sort(keys);
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), keys);
+	}
+
+	@Test
+	public void reversedScanIsNotSplit() {
+		keys(table().parallelScan(new Scan().setReversed(true), 3, true));
+		assertEquals(1, scans.size());
+	}
+
+	@Test
+	public void closingTheClientStopsTheScan() {
+		for (int i = 0; i < 1000; i++) {
+			rows.add(String.format("a%04d", i));
+		}
+
+		HBaseTable table = table();
+		Iterator<Result> iterator = table.parallelScan(new Scan().setCaching(1), 1, true).iterator();
+		assertTrue(iterator.hasNext());
+		long start = System.currentTimeMillis();
+		client.close();
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		try {
+			while (iterator.hasNext()) {
+				iterator.next();
+			}
+
+			fail();
+		} catch (InvalidOperationException e) {
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PrefetchScannerTest {
+	private static final Executor THREAD_PER_TASK = runnable -> {
+		Thread thread = new Thread(runnable, "prefetch-test");
+		thread.setDaemon(true);
+		thread.start();
+	};
+	private final AtomicInteger fetched = new AtomicInteger();
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	private static Result result(int row) {
+		return Result.create(new Cell[]{
+			new KeyValue(Bytes.toBytes(row), Bytes.toBytes("d"), Bytes.toBytes("q"), Bytes.toBytes(row))});
+	}
+
+	/**
+	 * @param rows rows of the scanner, negative for an endless one
+	 */
+	private ResultScanner scanner(int rows) {
+		return Fakes.of(ResultScanner.class, (method, args) -> {
+			switch (method) {
+				case "next":
+					List<Result> results = new ArrayList<>();
+					while (results.size() < (int) args[0] && (rows < 0 || fetched.get() < rows)) {
+						results.add(result(fetched.getAndIncrement()));
+					}
+
+					return results.toArray(new Result[results.size()]);
+				case "close":
+					closed.countDown();
+					return null;
+				default:
+					return null;
+			}
+		});
+	}
+
+	@Test
+	public void deliversEveryRowInOrder() throws Exception {
+		PrefetchScanner scanner = new PrefetchScanner(null, scanner(10), 3, 2, THREAD_PER_TASK, null);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, Bytes.toInt(scanner.next().getRow()));
+		}
+
+		assertNull(scanner.next());
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void readsAtMostTheWindowAhead() throws Exception {
+		PrefetchScanner scanner = new PrefetchScanner(null, scanner(-1), 2, 1, THREAD_PER_TASK, null);
+		assertNotNull(scanner.next());
+		Thread.sleep(200);
+		// the batch being read, the window and the batch waiting for window space
+		assertTrue(fetched.get() <= 2 * 4);
+		scanner.close();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void closingTheClientStopsTheFetch() throws Exception {
+		Connection connection = Fakes.of(Connection.class, (method, args) -> null);
+		HBaseClient client = HBaseClient.Builder.create().connection(connection).build();
+		PrefetchScanner scanner = new PrefetchScanner(client, scanner(-1), 2, 1, client.loops(), null);
+		assertNotNull(scanner.next());
+		long start = System.currentTimeMillis();
+		client.close();
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		try {
+			while (scanner.next() != null) ;
+			fail();
+		} catch (IOException e) {
+		}
+	}
+}
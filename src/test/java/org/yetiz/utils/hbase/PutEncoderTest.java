@@ -0,0 +1,48 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PutEncoderTest {
+	private static final byte[] ROW = Bytes.toBytes("row");
+	private static final byte[] FAMILY = Bytes.toBytes("d");
+
+	private static byte[] value(Put put, String qualifier) {
+		return put.get(FAMILY, Bytes.toBytes(qualifier)).get(0).getValue();
+	}
+
+	@Test
+	public void encodesLikeBytes() {
+		Put put = PutEncoder.create().wrap(new Put(ROW))
+			.add(FAMILY, Bytes.toBytes("l"), 42L)
+			.add(FAMILY, Bytes.toBytes("i"), 7)
+			.add(FAMILY, Bytes.toBytes("s"), (short) 3)
+			.add(FAMILY, Bytes.toBytes("d"), 1.5)
+			.add(FAMILY, Bytes.toBytes("f"), 2.5f)
+			.add(FAMILY, Bytes.toBytes("b"), true)
+			.put();
+		assertArrayEquals(Bytes.toBytes(42L), value(put, "l"));
+		assertArrayEquals(Bytes.toBytes(7), value(put, "i"));
+		assertArrayEquals(Bytes.toBytes((short) 3), value(put, "s"));
+		assertArrayEquals(Bytes.toBytes(1.5), value(put, "d"));
+		assertArrayEquals(Bytes.toBytes(2.5f), value(put, "f"));
+		assertArrayEquals(Bytes.toBytes(true), value(put, "b"));
+	}
+
+	@Test
+	public void keepsPutTimestamp() {
+		Put put = PutEncoder.create().wrap(new Put(ROW, 1234L)).add(FAMILY, Bytes.toBytes("l"), 1L).put();
+		assertEquals(1234L, put.get(FAMILY, Bytes.toBytes("l")).get(0).getTimestamp());
+	}
+
+	@Test
+	public void reusesScratchSafely() {
+		PutEncoder encoder = PutEncoder.create();
+		Put first = encoder.wrap(new Put(ROW)).add(FAMILY, Bytes.toBytes("l"), 1L).put();
+		encoder.wrap(new Put(ROW)).add(FAMILY, Bytes.toBytes("l"), 2L);
+		assertArrayEquals(Bytes.toBytes(1L), value(first, "l"));
+	}
+}
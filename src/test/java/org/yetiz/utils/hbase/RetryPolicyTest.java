@@ -0,0 +1,49 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+	private static final byte[] ROW = {1};
+
+	@Test
+	public void backsOffExponentially() {
+		RetryPolicy policy = RetryPolicy.create().initialBackoff(100).maxBackoff(1000);
+		ActionPackage aPackage = new ActionPackage(new Put(ROW));
+		for (int attempt = 0; attempt < 6; attempt++) {
+			aPackage.attempts = attempt;
+			long expected = Math.min(1000, 100L << attempt);
+			long backoff = policy.backoff(aPackage, new IOException());
+			assertTrue(backoff >= expected / 2 && backoff <= expected);
+		}
+	}
+
+	@Test
+	public void stopsAfterMaxAttempts() {
+		ActionPackage aPackage = new ActionPackage(new Put(ROW));
+		aPackage.attempts = 3;
+		assertEquals(-1, RetryPolicy.create().maxAttempts(3).backoff(aPackage, new IOException()));
+		assertEquals(-1, RetryPolicy.none().backoff(new ActionPackage(new Put(ROW)), new IOException()));
+	}
+
+	@Test
+	public void stopsAtDeadline() {
+		ActionPackage aPackage = new ActionPackage(new Put(ROW), System.currentTimeMillis() - 1000);
+		assertEquals(-1, RetryPolicy.create().deadline(500).backoff(aPackage, new IOException()));
+	}
+
+	@Test
+	public void neverRetriesNonIdempotent() {
+		RetryPolicy policy = RetryPolicy.create();
+		assertEquals(-1, policy.backoff(new ActionPackage(new Increment(ROW)), new IOException()));
+		assertEquals(-1, policy.backoff(new ActionPackage(new Append(ROW)), new IOException()));
+		assertEquals(-1, policy.backoff(new ActionPackage(new Put(ROW)), new DoNotRetryIOException()));
+	}
+}
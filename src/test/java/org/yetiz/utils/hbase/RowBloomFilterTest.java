@@ -0,0 +1,67 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RowBloomFilterTest {
+	private final HBaseMetrics metrics = new HBaseMetrics();
+
+	private RowBloomFilter filter() {
+		return new RowBloomFilter("bloom", BloomPolicy.create().expectedRows(10000).falsePositiveRate(0.01), metrics);
+	}
+
+	@Test
+	public void neverMissesAddedRows() {
+		RowBloomFilter filter = filter();
+		filter.ready(true);
+		for (int i = 0; i < 10000; i++) {
+			filter.add(Bytes.toBytes("row" + i));
+		}
+
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain(Bytes.toBytes("row" + i)));
+		}
+	}
+
+	@Test
+	public void keepsFalsePositiveRate() {
+		RowBloomFilter filter = filter();
+		filter.ready(true);
+		for (int i = 0; i < 10000; i++) {
+			filter.add(Bytes.toBytes("row" + i));
+		}
+
+		int positives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain(Bytes.toBytes("other" + i))) {
+				positives++;
+			}
+		}
+
+		assertTrue(positives < 300);
+	}
+
+	@Test
+	public void letsEverythingThroughUntilReady() {
+		RowBloomFilter filter = filter();
+		assertTrue(filter.mightContain(Bytes.toBytes("row")));
+		filter.ready(true);
+		assertFalse(filter.mightContain(Bytes.toBytes("row")));
+		assertEquals(1, metrics.value("bloom.negatives"));
+	}
+
+	@Test
+	public void countsFalsePositives() {
+		RowBloomFilter filter = filter();
+		filter.verified(false);
+		assertEquals(0, metrics.value("bloom.positives"));
+		filter.ready(true);
+		filter.verified(true);
+		filter.verified(false);
+		assertEquals(2, metrics.value("bloom.positives"));
+		assertEquals(1, metrics.value("bloom.false_positives"));
+		assertEquals(500000, metrics.value("bloom.false_positive_ppm"));
+	}
+}
@@ -0,0 +1,131 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Consistency;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class RowCacheTest {
+	private static final byte[] FAMILY = Bytes.toBytes("d");
+	private static final byte[] QUALIFIER = Bytes.toBytes("q");
+	private final HBaseMetrics metrics = new HBaseMetrics();
+	private final AtomicInteger loads = new AtomicInteger();
+	private final Function<Get, Result> loader = get -> {
+		loads.incrementAndGet();
+		return result(get.getRow(), 100);
+	};
+
+	private static Result result(byte[] row, int valueLength) {
+		return Result.create(new Cell[]{new KeyValue(row, FAMILY, QUALIFIER, new byte[valueLength])});
+	}
+
+	private static Get get(String row) {
+		return new Get(Bytes.toBytes(row));
+	}
+
+	@Test
+	public void servesRepeatedReads() {
+		RowCache cache = new RowCache("cache", CachePolicy.create(), metrics);
+		Result first = cache.get(get("a"), loader);
+		assertSame(first, cache.get(get("a"), loader));
+		assertEquals(1, loads.get());
+		assertEquals(1, metrics.value("cache.hits"));
+		assertEquals(1, cache.rows());
+	}
+
+	@Test
+	public void cachesEveryShapeAndInvalidatesThemTogether() {
+		RowCache cache = new RowCache("cache", CachePolicy.create(), metrics);
+		cache.get(get("a"), loader);
+		cache.get(get("a").addColumn(FAMILY, QUALIFIER), loader);
+		cache.get(get("a").addColumn(FAMILY, QUALIFIER), loader);
+		assertEquals(2, loads.get());
+		cache.invalidate(Bytes.toBytes("a"));
+		assertEquals(0, cache.rows());
+		assertEquals(0, cache.bytes());
+		cache.get(get("a"), loader);
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void skipsUncacheableGets() {
+		RowCache cache = new RowCache("cache", CachePolicy.create(), metrics);
+		Get timeline = get("a");
+		timeline.setConsistency(Consistency.TIMELINE);
+		assertFalse(RowCache.cacheable(timeline));
+		assertFalse(RowCache.cacheable(get("a").setCheckExistenceOnly(true)));
+		cache.get(timeline, loader);
+		cache.get(timeline, loader);
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.rows());
+	}
+
+	@Test
+	public void expiresAfterTtl() throws InterruptedException {
+		RowCache cache = new RowCache("cache", CachePolicy.create().ttl(10), metrics);
+		cache.get(get("a"), loader);
+		Thread.sleep(20);
+		cache.get(get("a"), loader);
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evictsProbationBeforeProtected() {
+		RowCache cache = new RowCache("cache", CachePolicy.create().maxBytes(4096), metrics);
+		cache.get(get("hot"), loader);
+		cache.get(get("hot"), loader);
+		for (int i = 0; i < 100; i++) {
+			cache.get(get("cold" + i), loader);
+		}
+
+		assertTrue(cache.bytes() <= 4096);
+		assertTrue(metrics.value("cache.evictions") > 0);
+		int before = loads.get();
+		cache.get(get("hot"), loader);
+		assertEquals(before, loads.get());
+		cache.get(get("cold0"), loader);
+		assertEquals(before + 1, loads.get());
+	}
+
+	@Test
+	public void loadsOnlyMissedGets() {
+		RowCache cache = new RowCache("cache", CachePolicy.create(), metrics);
+		cache.get(get("a"), loader);
+		Result[] results = cache.get(Arrays.asList(get("a"), get("b"), get("c")), gets -> {
+			assertEquals(2, gets.size());
+			return gets.stream().map(loader).toArray(Result[]::new);
+		});
+		assertEquals(3, results.length);
+		assertArrayEquals(Bytes.toBytes("b"), results[1].getRow());
+		assertEquals(3, cache.rows());
+	}
+
+	@Test
+	public void refillsFromOffHeap() {
+		RowCache cache = new RowCache("cache", CachePolicy.create().maxBytes(2048)
+			.offHeapBytes(1024 * 1024).offHeapSlabSize(64 * 1024), metrics);
+		try {
+			for (int i = 0; i < 50; i++) {
+				cache.get(get("row" + i), loader);
+			}
+
+			int before = loads.get();
+			for (int i = 0; i < 50; i++) {
+				assertArrayEquals(Bytes.toBytes("row" + i), cache.get(get("row" + i), loader).getRow());
+			}
+
+			assertEquals(before, loads.get());
+		} finally {
+			cache.close();
+		}
+	}
+}
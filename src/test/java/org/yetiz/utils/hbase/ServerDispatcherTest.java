@@ -0,0 +1,178 @@
+package org.yetiz.utils.hbase;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+import org.yetiz.utils.hbase.exception.YHBaseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServerDispatcherTest {
+	private static final TableName TABLE = TableName.valueOf("dispatcher_test");
+	private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private volatile CountDownLatch gate = new CountDownLatch(0);
+	private volatile boolean locatorFails = false;
+	private volatile boolean batchFails = false;
+	private HBaseClient client;
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		if (client != null) {
+			client.close();
+		}
+	}
+
+	private ServerDispatcher dispatcher(int maxInFlightPerServer) {
+		Connection connection = Fakes.of(Connection.class, (method, args) -> {
+			switch (method) {
+				case "getRegionLocator":
+					if (locatorFails) {
+						throw new IOException("no locator");
+					}
+
+					return locator();
+				case "getTable":
+					return table();
+				default:
+					return null;
+			}
+		});
+		client = HBaseClient.Builder.create().connection(connection).build();
+		return new ServerDispatcher(client, executor, maxInFlightPerServer);
+	}
+
+	private RegionLocator locator() {
+		return Fakes.of(RegionLocator.class, (method, args) -> {
+			if (method.equals("getRegionLocation")) {
+				// the first letter of the row is its server
+				String host = Bytes.toString((byte[]) args[0]).substring(0, 1);
+				return new HRegionLocation(new HRegionInfo(TABLE.get()), ServerName.valueOf(host, 16020, 1));
+			}
+
+			return null;
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private Table table() {
+		return Fakes.of(Table.class, (method, args) -> {
+			if (!method.equals("batch")) {
+				return null;
+			}
+
+			List<? extends Row> rows = (List<? extends Row>) args[0];
+			Object[] results = (Object[]) args[1];
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				gate.await();
+				List<String> keys = new ArrayList<>();
+				for (int i = 0; i < rows.size(); i++) {
+					keys.add(Bytes.toString(rows.get(i).getRow()));
+					results[i] = keys.get(i);
+				}
+
+				batches.add(keys);
+				if (batchFails) {
+					throw new IOException("batch failed");
+				}
+			} finally {
+				inFlight.decrementAndGet();
+			}
+
+			return null;
+		});
+	}
+
+	private static List<Row> rows(String... keys) {
+		List<Row> rows = new ArrayList<>();
+		for (String key : keys) {
+			rows.add(new Put(Bytes.toBytes(key)));
+		}
+
+		return rows;
+	}
+
+	@Test
+	public void splitsByServerAndFillsResultsInOrder() {
+		ServerDispatcher dispatcher = dispatcher(2);
+		Object[] results = new Object[4];
+		dispatcher.batch(TABLE, rows("a1", "b1", "a2", "b2"), results);
+		assertArrayEquals(new Object[]{"a1", "b1", "a2", "b2"}, results);
+		assertEquals(2, batches.size());
+		assertTrue(batches.contains(Arrays.asList("a1", "a2")));
+		assertTrue(batches.contains(Arrays.asList("b1", "b2")));
+		assertEquals(2, client.metrics().value("batch.server_groups"));
+	}
+
+	@Test
+	public void unknownLocationsFormOneBatch() {
+		ServerDispatcher dispatcher = dispatcher(2);
+		locatorFails = true;
+		Object[] results = new Object[3];
+		dispatcher.batch(TABLE, rows("a1", "b1", "c1"), results);
+		assertEquals(Collections.singletonList(Arrays.asList("a1", "b1", "c1")), batches);
+		assertArrayEquals(new Object[]{"a1", "b1", "c1"}, results);
+	}
+
+	@Test
+	public void boundsSubBatchesPerServer() throws Exception {
+		ServerDispatcher dispatcher = dispatcher(1);
+		gate = new CountDownLatch(1);
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				String key = "a" + i;
+				futures.add(callers.submit(() -> dispatcher.batch(TABLE, rows(key, "b" + key), new Object[2])));
+			}
+
+			Thread.sleep(200);
+			assertEquals(1, client.metrics().value("batch.in_flight.a:16020"));
+			assertTrue(client.metrics().value("batch.pending.a:16020") > 0);
+			gate.countDown();
+			for (Future<?> future : futures) {
+				future.get(5, TimeUnit.SECONDS);
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertEquals(8, batches.size());
+		// one lane each for server a and server b
+		assertEquals(2, maxInFlight.get());
+	}
+
+	@Test
+	public void failedSubBatchStillFillsResults() {
+		ServerDispatcher dispatcher = dispatcher(2);
+		batchFails = true;
+		Object[] results = new Object[2];
+		try {
+			dispatcher.batch(TABLE, rows("a1", "b1"), results);
+			fail();
+		} catch (YHBaseException e) {
+			assertArrayEquals(new Object[]{"a1", "b1"}, results);
+		}
+	}
+}
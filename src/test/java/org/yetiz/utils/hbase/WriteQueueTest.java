@@ -0,0 +1,180 @@
+package org.yetiz.utils.hbase;
+
+import org.junit.Test;
+import org.yetiz.utils.hbase.exception.QueueFullException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WriteQueueTest {
+	private final HBaseMetrics metrics = new HBaseMetrics();
+	private final List<String> ran = new ArrayList<>();
+	private final List<String> dropped = new ArrayList<>();
+
+	private WriteQueue<String> queue(QueueLimit limit) {
+		return new WriteQueue<>("test", limit, metrics, String::length, ran::add, dropped::add);
+	}
+
+	@Test
+	public void rejectsOverCount() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(2).policy(OverflowPolicy.REJECT));
+		queue.offer("a");
+		queue.offer("b");
+		try {
+			queue.offer("c");
+			fail();
+		} catch (QueueFullException e) {
+		}
+
+		assertEquals(2, queue.size());
+		assertEquals(1, metrics.value("test.rejected"));
+	}
+
+	@Test
+	public void rejectsOverBytes() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxBytes(5).policy(OverflowPolicy.REJECT));
+		queue.offer("abc");
+		try {
+			queue.offer("abc");
+			fail();
+		} catch (QueueFullException e) {
+		}
+
+		queue.offer("ab");
+		assertEquals(5, queue.bytes());
+	}
+
+	@Test
+	public void admitsOversizedEntryIntoEmptyQueue() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxBytes(2).policy(OverflowPolicy.REJECT));
+		queue.offer("abcdef");
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void callerRunsWhenFull() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.CALLER_RUNS));
+		queue.offer("a");
+		queue.offer("b");
+		assertEquals(1, queue.size());
+		assertEquals(1, ran.size());
+		assertEquals("b", ran.get(0));
+	}
+
+	@Test
+	public void dropsOldestWhenFull() throws InterruptedException {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(2).policy(OverflowPolicy.DROP_OLDEST));
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+		assertEquals(1, dropped.size());
+		assertEquals("a", dropped.get(0));
+		assertEquals("b", queue.poll(0, TimeUnit.MILLISECONDS));
+		assertEquals("c", queue.poll(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void blockTimesOut() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.BLOCK).blockTimeout(20));
+		queue.offer("a");
+		long start = System.nanoTime();
+		try {
+			queue.offer("b");
+			fail();
+		} catch (QueueFullException e) {
+		}
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertEquals(1, metrics.value("test.blocked"));
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws InterruptedException {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.BLOCK).blockTimeout(5000));
+		queue.offer("a");
+		Thread consumer = new Thread(() -> {
+			try {
+				Thread.sleep(20);
+				queue.poll(0, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+			}
+		});
+		consumer.start();
+		queue.offer("b");
+		consumer.join();
+		assertEquals("b", queue.poll(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void collectCutsBatchByRows() throws InterruptedException {
+		WriteQueue<String> queue = queue(QueueLimit.unbounded());
+		for (int i = 0; i < 5; i++) {
+			queue.offer("v" + i);
+		}
+
+		List<String> batch = new ArrayList<>();
+		assertTrue(queue.collect(batch, FlushPolicy.create().maxRows(3).linger(1000), 0, TimeUnit.MILLISECONDS));
+		assertEquals(3, batch.size());
+		assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void collectCutsBatchByBytes() throws InterruptedException {
+		WriteQueue<String> queue = queue(QueueLimit.unbounded());
+		queue.offer("aaaa");
+		queue.offer("bbbb");
+		queue.offer("cccc");
+		List<String> batch = new ArrayList<>();
+		assertTrue(queue.collect(batch, FlushPolicy.create().maxBytes(6).linger(1000), 0, TimeUnit.MILLISECONDS));
+		assertEquals(1, batch.size());
+	}
+
+	@Test
+	public void collectLingers() throws InterruptedException {
+		WriteQueue<String> queue = queue(QueueLimit.unbounded());
+		queue.offer("a");
+		List<String> batch = new ArrayList<>();
+		assertFalse(queue.collect(batch, FlushPolicy.create().linger(10), 0, TimeUnit.MILLISECONDS));
+		assertEquals(1, batch.size());
+		assertEquals(0, queue.bytes());
+	}
+
+	@Test
+	public void requeueDoesNotWait() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.BLOCK).blockTimeout(5000));
+		queue.offer("a");
+		assertFalse(queue.requeue("b"));
+		assertEquals(1, queue.size());
+		assertEquals(0, metrics.value("test.requeued"));
+	}
+
+	@Test
+	public void requeueFollowsPolicy() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.REJECT));
+		assertTrue(queue.requeue("a"));
+		assertEquals(1, metrics.value("test.requeued"));
+		try {
+			queue.requeue("b");
+			fail();
+		} catch (QueueFullException e) {
+		}
+	}
+
+	@Test
+	public void requeueNeverRunsTheCaller() {
+		WriteQueue<String> queue = queue(QueueLimit.create().maxCount(1).policy(OverflowPolicy.CALLER_RUNS));
+		queue.offer("a");
+		try {
+			queue.requeue("b");
+			fail();
+		} catch (QueueFullException e) {
+		}
+
+		assertTrue(ran.isEmpty());
+		assertEquals(0, metrics.value("test.caller_runs"));
+		assertEquals(1, metrics.value("test.rejected"));
+	}
+}